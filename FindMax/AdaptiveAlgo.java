@@ -0,0 +1,204 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * A find max algorithm that routes each call to the sequential, the
+ * SIMD or the parallel path by the length of the array. The two
+ * crossover lengths are measured on this machine when the object is
+ * created, or loaded from a calibration file written by an earlier
+ * run. Choosing a path costs two compares per call.
+ * The parallel path is a persistent Algo2 with the SIMD kernel, so
+ * the instance must be released with close().
+ */
+class AdaptiveAlgo implements FindMax, AutoCloseable {
+    static final int MIN_EXP = 6;   // Smallest calibration size: 2^6.
+    static final int MAX_EXP = 22;  // Largest calibration size: 2^22.
+    static final int WORK = 1 << 22; // Elements scanned per measurement.
+    static final int NTESTS = 5;
+    static final int WARMUP = 20000;  // Calls per path before measuring.
+    Algo2 parAlgo;
+    int simdMin;  // Use the SIMD path for n >= simdMin.
+    int parMin;   // Use the parallel path for n >= parMin.
+
+    AdaptiveAlgo() {
+	this(null);
+    }
+
+    /**
+     * @param filename: A calibration file. If it exists and was made
+     * with the same nr of threads, the crossovers are loaded from it.
+     * Otherwise they are measured and written to it. May be null.
+     */
+    AdaptiveAlgo(String filename) {
+	parAlgo = new Algo2(Algo2.defaultThreads(), true, true);
+	if (filename == null || !load(filename)) {
+	    calibrate();
+	    if (filename != null) {
+		save(filename);
+	    }
+	}
+	System.out.println("AdaptiveAlgo: simdMin = " + simdMin +
+			   ", parMin = " + parMin);
+    }
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max
+     */
+    public int getMax(int[] a) {
+	int n = a.length;
+	if (n < simdMin) {
+	    int maximum = a[0];
+	    for (int i = 1; i < n; i++) {
+		if (a[i] > maximum) {
+		    maximum = a[i];
+		}
+	    }
+	    return maximum;
+	} else if (n < parMin) {
+	    return SimdAlgo.getMax(a, 0, n);
+	}
+	return parAlgo.getMax(a);
+    } // end getMax
+
+    /**
+     * Measure the three paths for n = 2^MAX_EXP, ..., 2^MIN_EXP, and
+     * set each crossover to the smallest size from which the faster
+     * path wins at every larger size. The sizes are measured from the
+     * largest down, so a path is no longer measured once it has lost.
+     */
+    void calibrate() {
+	FindMax seqAlgo = new SeqAlgo();
+	FindMax simdAlgo = new SimdAlgo();
+	Random random = new Random();
+	boolean simdWins = true, parWins = true;
+	simdMin = Integer.MAX_VALUE;
+	parMin = Integer.MAX_VALUE;
+
+	// Let the JIT compile all three paths before measuring.
+	int[] small = new int[1 << MIN_EXP];
+	for (int i = 0; i < WARMUP; i++) {
+	    seqAlgo.getMax(small);
+	    simdAlgo.getMax(small);
+	    parAlgo.getMax(small);
+	}
+
+	for (int e = MAX_EXP; e >= MIN_EXP && (simdWins || parWins); e--) {
+	    int[] a = new int[1 << e];
+	    for (int i = 0; i < a.length; i++) {
+		a[i] = random.nextInt();
+	    }
+	    double tSeq = measure(seqAlgo, a);
+	    double tSimd = measure(simdAlgo, a);
+	    if (simdWins && tSimd < tSeq) {
+		simdMin = a.length;
+	    } else {
+		simdWins = false;
+	    }
+	    if (parWins && measure(parAlgo, a) < Math.min(tSeq, tSimd)) {
+		parMin = a.length;
+	    } else {
+		parWins = false;
+	    }
+	}
+	if (parMin < simdMin) {
+	    simdMin = parMin;
+	}
+    } // end calibrate
+
+    /**
+     * Return the median time per call of an algorithm on an array.
+     * Each measurement repeats the call until WORK elements have been
+     * scanned, so that short calls can be timed.
+     */
+    double measure(FindMax algo, int[] a) {
+	int reps = Math.max(1, WORK/a.length);
+	double[] times = new double[NTESTS];
+	int sink = 0;
+	for (int r = 0; r < reps; r++) {
+	    sink += algo.getMax(a);  // Warm up.
+	}
+	for (int t = 0; t < NTESTS; t++) {
+	    long startTime = System.nanoTime();
+	    for (int r = 0; r < reps; r++) {
+		sink += algo.getMax(a);
+	    }
+	    times[t] = (double) (System.nanoTime() - startTime)/reps;
+	}
+	if (sink == 42) {
+	    System.out.print("");  // Keep the calls from being removed.
+	}
+	Arrays.sort(times);
+	return times[NTESTS/2];
+    } // end measure
+
+    /**
+     * Load the crossovers from a calibration file.
+     * @param filename: The file.
+     * @return: true if the file exists, has all the crossovers, and
+     * matches this machine.
+     */
+    boolean load(String filename) {
+	File file = new File(filename);
+	if (!file.exists()) {
+	    return false;
+	}
+	Properties p = new Properties();
+	try (InputStream in = new FileInputStream(file)) {
+	    p.load(in);
+	} catch (IOException e) {
+	    System.out.println("load: " + e.toString());
+	    return false;
+	}
+	// A missing key gives parseInt(null), which also throws
+	// NumberFormatException, so a truncated file is recalibrated too.
+	int threads, simd, par;
+	try {
+	    threads = Integer.parseInt(p.getProperty("nThreads"));
+	    simd = Integer.parseInt(p.getProperty("simdMin"));
+	    par = Integer.parseInt(p.getProperty("parMin"));
+	} catch (NumberFormatException e) {
+	    System.out.println("load: " + e.toString());
+	    return false;
+	}
+	if (threads != parAlgo.nThreads) {
+	    return false;
+	}
+	simdMin = simd;
+	parMin = par;
+	return true;
+    } // end load
+
+    /**
+     * Save the crossovers to a calibration file.
+     * @param filename: The file.
+     */
+    void save(String filename) {
+	Properties p = new Properties();
+	p.setProperty("nThreads", Integer.toString(parAlgo.nThreads));
+	p.setProperty("simdMin", Integer.toString(simdMin));
+	p.setProperty("parMin", Integer.toString(parMin));
+	try (OutputStream out = new FileOutputStream(filename)) {
+	    p.store(out, "FindMax calibration");
+	} catch (IOException e) {
+	    System.out.println("save: " + e.toString());
+	}
+    } // end save
+
+    /**
+     * Stop the worker threads of the parallel path.
+     */
+    public void close() {
+	parAlgo.close();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Self-calibrating \"Find max\" algorithm";
+    }
+} // end class AdaptiveAlgo
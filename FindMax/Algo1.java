@@ -3,10 +3,28 @@ import java.util.concurrent.*;
 /**
  * Wilkinson's parallel algorithm for finding the largest element
  * in an array.
+ * Ties are broken by index: P_j also clears m[i] when a[j] == a[i]
+ * and j < i. Then exactly one P_i is left with m[i] set, namely the
+ * lowest index of max, so the write of max is not a race.
+ * In virtual mode the threads P_i and P_j are JDK virtual threads,
+ * which are much cheaper to create than platform threads.
  */
-class Algo1 implements FindMax {
+class Algo1 implements FindMax, FindArgMax {
     CyclicBarrier barrier;
     int max;
+    int maxInd;
+    boolean virtual;
+
+    Algo1() {
+	this(false);
+    }
+
+    /**
+     * @param virtual: If true, use virtual threads.
+     */
+    Algo1(boolean virtual) {
+	this.virtual = virtual;
+    }
 
     /**
      * Find the maximum element in an array.
@@ -15,6 +33,7 @@ class Algo1 implements FindMax {
      */
     public int getMax(int[] a) {
 	max = -1; // Reset max from last call.
+	maxInd = -1;
 	int n = a.length;
         boolean m[] = new boolean[n];
 	
@@ -23,8 +42,7 @@ class Algo1 implements FindMax {
 	Thread[] workerThreads = new Thread[n];
 	Thread tmp;
 	for (int i = 0; i < n; i++) {
-	    tmp = new Thread(new P_i(i, a, m));
-	    tmp.start();
+	    tmp = startThread(new P_i(i, a, m));
 	    workerThreads[i] = tmp;
 	}
 
@@ -40,13 +58,40 @@ class Algo1 implements FindMax {
 	return max;
     } // end getMax
 
+    /**
+     * Find the lowest index of the maximum element in an array.
+     * @param a: The array.
+     * @return: The index of max.
+     */
+    public int getArgMax(int[] a) {
+	getMax(a);
+	return maxInd;
+    } // end getArgMax
+
     /**
      * Return a string identifying the algorithm.
      */
     public String toString() {
+	if (virtual) {
+	    return "Wilkinson's algorithm: virtual threads";
+	}
 	return "Wilkinson's algorithm";	
     }
 
+    /**
+     * Start a platform or virtual thread, depending on the mode.
+     * @param r: The thread's task.
+     * @return: The started thread.
+     */
+    Thread startThread(Runnable r) {
+	if (virtual) {
+	    return Thread.ofVirtual().start(r);
+	}
+	Thread t = new Thread(r);
+	t.start();
+	return t;
+    } // end startThread
+
     /**
      * The calling thread waits by a synchronization barrier.
      * @param b: The barrier.
@@ -90,8 +135,7 @@ class Algo1 implements FindMax {
 	    int ind = 0;
 	    for (int j = 0; j < n; j++) {
 		if (j != i) {
-		    tmp = new Thread(new P_j(j));
-		    tmp.start();
+		    tmp = startThread(new P_j(j));
 		    myThreads[ind++] = tmp;
 		}
 	    }
@@ -108,6 +152,7 @@ class Algo1 implements FindMax {
 
 	    if (m[i]) {
 		max = a[i];
+		maxInd = i;
 	    }
 	} // end run
 
@@ -122,7 +167,7 @@ class Algo1 implements FindMax {
 	    }
 
 	    public void run() {
-		if (a[i] < a[j]) {
+		if (a[i] < a[j] || (a[i] == a[j] && j < i)) {
 		    m[i] = false;
 		}
 	    }
@@ -0,0 +1,81 @@
+/**
+ * Wilkinson's algorithm with the n² comparisons done by the tiled
+ * all-pairs engine. Item i is eliminated if a[i] < a[j], or
+ * a[i] == a[j] and j < i, so the only survivor is the lowest index of
+ * max. Like Algo1 it does O(n²) work, but spread over a fixed nr of
+ * threads with cache-sized tiles.
+ */
+class Algo1_Blocked implements FindMax, FindArgMax {
+    AllPairsEngine engine;
+    int[] a;
+
+    Algo1_Blocked() {
+	this(Algo2.defaultThreads());
+    }
+
+    /**
+     * @param nThreads: Nr of worker threads.
+     */
+    Algo1_Blocked(int nThreads) {
+	System.out.println("Algo1_Blocked: nThreads = " + nThreads);
+	engine = new AllPairsEngine(nThreads) {
+		void compareTile(int i0, int i1, int j0, int j1, long[] bits) {
+		    for (int i = i0; i < i1; i++) {
+			if (!isSet(bits, i)) {
+			    continue; // Already eliminated.
+			}
+			int ai = a[i];
+			boolean keep = true;
+			// Ties eliminate i only for j < i.
+			int mid = Math.max(j0, Math.min(j1, i));
+			for (int j = j0; j < mid; j++) {
+			    if (ai <= a[j]) {
+				keep = false;
+			    }
+			}
+			for (int j = mid; j < j1; j++) {
+			    if (ai < a[j]) {
+				keep = false;
+			    }
+			}
+			if (!keep) {
+			    clear(bits, i);
+			}
+		    }
+		}
+	    };
+    }
+
+    /**
+     * Find the lowest index of the maximum element in an array.
+     * @param a: The array.
+     * @return: The index of max.
+     */
+    public int getArgMax(int[] a) {
+	this.a = a;
+	long[] survivors = engine.run(a.length);
+	this.a = null;
+	for (int w = 0; w < survivors.length; w++) {
+	    if (survivors[w] != 0) {
+		return (w << 6) + Long.numberOfTrailingZeros(survivors[w]);
+	    }
+	}
+	return -1;
+    } // end getArgMax
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: The maximum element.
+     */
+    public int getMax(int[] a) {
+	return a[getArgMax(a)];
+    } // end getMax
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Wilkinson's algorithm: blocked all-pairs";
+    }
+} // end class Algo1_Blocked
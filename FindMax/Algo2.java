@@ -2,35 +2,112 @@ import java.util.concurrent.*;
 
 /**
  * Implements the find max algorithm.
+ * In persistent mode the threads are the workers of a WorkerPool,
+ * which are started once and parked by a barrier between calls to
+ * getMax, so that a call only costs two barrier rounds instead of
+ * starting and joining nThreads threads.
+ * A persistent instance must be released with close().
+ * In SIMD mode each thread scans its part with the vector kernel
+ * of SimdAlgo.
+ * With TreeCombiner.MIN_THREADS threads or more, the local maxima are
+ * combined by a TreeCombiner instead of the barrier and a scan by
+ * thread 0.
  */
-class Algo2 implements FindMax {
+class Algo2 implements FindMax, FindArgMax, PartTask, AutoCloseable {
     int nThreads;
     CyclicBarrier barrier;
+    TreeCombiner tree;  // null: combine with the barrier.
     int[] localMaxArray;
+    int[] localArgMaxArray;
     int globalMax;
+    int globalArgMax;
+    boolean argMaxMode; // Find the index of max in the current call.
     int[] a;
+    boolean persistent;
+    boolean simd;      // Use the vector kernel for local max.
+    WorkerPool pool;   // Only used in persistent mode.
     
     Algo2() {
-	// Set nr of threads = nr of cores on the machine.
-	nThreads = Runtime.getRuntime().availableProcessors();
-	if (nThreads == 64) {
-	    // NB: Hardcode the nr of physical cores (this particular machine
-	    // is using hyperthreading with 2 logical cores per physical core).
-	    nThreads = 32;
-	}
+	this(false);
+    }
+
+    /**
+     * @param persistent: If true, keep a group of worker threads alive
+     * across calls to getMax.
+     */
+    Algo2(boolean persistent) {
+	this(defaultThreads(), persistent, false);
+    }
+
+    /**
+     * @param nThreads: Nr of threads to split the array between.
+     * @param persistent: If true, keep a group of worker threads alive
+     * across calls to getMax.
+     * @param simd: If true, find the local max with the vector kernel.
+     */
+    Algo2(int nThreads, boolean persistent, boolean simd) {
+	this.nThreads = nThreads;
+	this.persistent = persistent;
+	this.simd = simd;
 	System.out.println("Algo 2: nThreads = " + nThreads);
 
 	localMaxArray = new int[nThreads];
+	localArgMaxArray = new int[nThreads];
 	barrier = new CyclicBarrier(nThreads);
+	if (nThreads >= TreeCombiner.MIN_THREADS) {
+	    tree = new TreeCombiner(nThreads);
+	}
+	if (persistent) {
+	    pool = new WorkerPool(nThreads);
+	}
     }
 
+    /**
+     * Return the default nr of threads: the nr of cores on the machine.
+     */
+    static int defaultThreads() {
+	int nThreads = Runtime.getRuntime().availableProcessors();
+	if (nThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    nThreads = 32;
+	}
+	return nThreads;
+    } // end defaultThreads
+
     /**
      * Find the maximum element in an array.
      * @param a: The array.
      * @return: Max
      */
     public int getMax(int[] a) {
+	argMaxMode = false;
+	findGlobalMax(a);
+	return globalMax;
+    } // end getMax
+
+    /**
+     * Find the lowest index of the maximum element in an array.
+     * @param a: The array.
+     * @return: The index of max
+     */
+    public int getArgMax(int[] a) {
+	argMaxMode = true;
+	findGlobalMax(a);
+	return globalArgMax;
+    } // end getArgMax
+
+    /**
+     * Let the threads find the max, and the index of max if
+     * argMaxMode is set, of an array.
+     * @param a: The array.
+     */
+    void findGlobalMax(int[] a) {
 	globalMax = -1; // Reset max from last call.
+	if (persistent) {
+	    findGlobalMaxPersistent(a);
+	    return;
+	}
 	// Delimit each thread's part of the array.
 	int startInd = 0, stopInd;
 	int n = a.length;
@@ -60,8 +137,86 @@ class Algo2 implements FindMax {
 		System.exit(1);
 	    }
 	}
-	return globalMax;
-    } // end getMax	
+    } // end findGlobalMax
+
+    /**
+     * Find the maximum element with the parked worker threads.
+     * @param a: The array.
+     */
+    void findGlobalMaxPersistent(int[] a) {
+	if (pool.closed) {
+	    throw new IllegalStateException("Algo2 is closed");
+	}
+	this.a = a;
+	pool.run(this);
+	this.a = null;
+    } // end findGlobalMaxPersistent
+
+    /**
+     * Do thread id's part of a call in persistent mode.
+     * @param id: The thread id.
+     */
+    public void runPart(int id) {
+	findLocalMax(id, a);
+    } // end runPart
+
+    /**
+     * Stop the worker threads of the persistent mode.
+     */
+    public void close() {
+	if (persistent) {
+	    pool.close();
+	}
+    } // end close
+
+    /**
+     * Find the max of thread id's part of the array, and let thread 0
+     * find the global max when all threads are done.
+     * @param id: The thread id.
+     * @param a: The array.
+     */
+    void findLocalMax(int id, int[] a) {
+	int n = a.length;
+	int len = n/nThreads;
+	int startInd = id*len;
+	int stopInd = (id == nThreads - 1) ? n : startInd + len;
+	new Para(id, a, startInd, stopInd).run();
+    } // end findLocalMax
+
+    /**
+     * Combine the local maxima of the threads into globalMax and
+     * globalArgMax. Called by every thread with its local result.
+     * @param id: The thread id.
+     * @param localMax: The max of the thread's part.
+     * @param localArgMax: The lowest index of localMax in the part.
+     */
+    void combine(int id, int localMax, int localArgMax) {
+	if (tree != null) {
+	    // Calls are separated by join or the start barrier.
+	    long key = tree.reduceMax(id, TreeCombiner.pack(localMax, localArgMax));
+	    if (id == 0) {
+		globalMax = TreeCombiner.value(key);
+		globalArgMax = TreeCombiner.index(key);
+	    }
+	    return;
+	}
+	localMaxArray[id] = localMax;
+	localArgMaxArray[id] = localArgMax;
+	waitByBarrier(barrier);
+
+	// Find global max. The parts are visited in index order, so
+	// the strict '>' keeps the lowest index of max.
+	if (id == 0) {
+	    for (int i = 0; i < localMaxArray.length; i++) {
+		if (localMaxArray[i] > localMax) {
+		    localMax = localMaxArray[i];
+		    localArgMax = localArgMaxArray[i];
+		}
+	    }
+	    globalMax = localMax;
+	    globalArgMax = localArgMax;
+	}
+    } // end combine
 	
     /**
      * The calling thread waits by a synchronization barrier.
@@ -94,24 +249,27 @@ class Algo2 implements FindMax {
 
 	public void run() {
 	    // Find local max.
-	    int localMax = a[startInd];
-	    for (int i = startInd + 1; i < stopInd; i++) {
-		if (a[i] > localMax) {
-		    localMax = a[i];
+	    int localMax;
+	    int localArgMax = startInd;
+	    if (argMaxMode) {
+		localMax = a[startInd];
+		for (int i = startInd + 1; i < stopInd; i++) {
+		    if (a[i] > localMax) {
+			localMax = a[i];
+			localArgMax = i;
+		    }
 		}
-	    }
-	    localMaxArray[id] = localMax;
-	    waitByBarrier(barrier);
-
-	    // Find global max.
-	    if (id == 0) {
-		for (int i = 0; i < localMaxArray.length; i++) {
-		    if (localMaxArray[i] > localMax) {
-			localMax = localMaxArray[i];
+	    } else if (simd) {
+		localMax = SimdAlgo.getMax(a, startInd, stopInd);
+	    } else {
+		localMax = a[startInd];
+		for (int i = startInd + 1; i < stopInd; i++) {
+		    if (a[i] > localMax) {
+			localMax = a[i];
 		    }
 		}
-		globalMax = localMax;
 	    }
+	    combine(id, localMax, localArgMax);
 	} // end run
     } // end class Para
 
@@ -119,6 +277,13 @@ class Algo2 implements FindMax {
      * Return a string identifying the algorithm.
      */
     public String toString() {
-	return "A more realistic \"Find max\" algorithm";
+	String s = "A more realistic \"Find max\" algorithm";
+	if (persistent) {
+	    s += ": persistent threads";
+	}
+	if (simd) {
+	    s += ": SIMD";
+	}
+	return s;
     } 
 } // end Algo2
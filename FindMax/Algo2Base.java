@@ -0,0 +1,93 @@
+import java.util.concurrent.*;
+
+/**
+ * The thread and barrier plumbing of Algo2, shared by the versions of
+ * the algorithm for other element types. runParts splits the indices
+ * 0, ..., n-1 between the threads as in Algo2, and each thread calls
+ * reducePart on its part. When all threads are past the barrier,
+ * thread 0 calls combineParts. A subclass keeps the array and one
+ * result slot per thread, and does the type-specific work in the two
+ * callbacks.
+ */
+abstract class Algo2Base {
+    int nThreads;
+    CyclicBarrier barrier;
+
+    /**
+     * @param nThreads: Nr of threads to split the array between.
+     * @param type: The element type, for the log message.
+     */
+    Algo2Base(int nThreads, String type) {
+	this.nThreads = nThreads;
+	System.out.println("Algo 2 (" + type + "): nThreads = " + nThreads);
+	barrier = new CyclicBarrier(nThreads);
+    }
+
+    /**
+     * Reduce a part of the array into thread id's result slot.
+     * @param id: The thread id.
+     * @param startInd: The first index of the part.
+     * @param stopInd: The index after the last index of the part.
+     */
+    abstract void reducePart(int id, int startInd, int stopInd);
+
+    /**
+     * Combine the result slots of all threads. Called by thread 0
+     * when all threads have reduced their parts.
+     */
+    abstract void combineParts();
+
+    /**
+     * Let the threads reduce their parts of an array, and combine the
+     * results.
+     * @param n: The length of the array.
+     */
+    void runParts(int n) {
+	// Delimit each thread's part of the array.
+	int startInd = 0, stopInd;
+	int len = n/nThreads;
+	Thread[] myThreads = new Thread[nThreads];
+	Thread t;
+	int i;
+	for (i = 0; i < nThreads - 1; i++) {
+	    stopInd = startInd + len;
+	    t = new Thread(new Para(i, startInd, stopInd));
+	    t.start();
+	    myThreads[i] = t;
+	    startInd = stopInd;
+	}
+
+	// Start the last thread.
+	t = new Thread(new Para(i, startInd, n));
+	t.start();
+	myThreads[i] = t;
+
+	// Wait for threads to finish.
+	for (i = 0; i < nThreads; i++) {
+	    try {
+		myThreads[i].join();
+	    } catch (InterruptedException e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+    } // end runParts
+
+    /* Thread class */
+    class Para implements Runnable {
+	int id, startInd, stopInd;
+
+	Para(int id, int start, int stop) {
+	    this.id = id;
+	    startInd = start; stopInd = stop;
+	}
+
+	public void run() {
+	    reducePart(id, startInd, stopInd);
+	    WorkerPool.waitByBarrier(barrier);
+	    if (id == 0) {
+		combineParts();
+	    }
+	} // end run
+    } // end class Para
+} // end class Algo2Base
@@ -0,0 +1,51 @@
+/**
+ * Implements the find max algorithm of Algo2 for arrays of doubles,
+ * as Algo2Long does for longs. The local maxima are combined with
+ * Math.max, which gives NaN if any element is NaN and orders -0.0
+ * below 0.0.
+ */
+class Algo2Double extends Algo2Base implements FindMaxDouble {
+    double[] a;
+    double[] localMaxArray;
+    double globalMax;
+
+    Algo2Double() {
+	this(Algo2.defaultThreads());
+    }
+
+    Algo2Double(int nThreads) {
+	super(nThreads, "double");
+	localMaxArray = new double[nThreads];
+    }
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max, or NaN if an element is NaN.
+     */
+    public double getMax(double[] a) {
+	this.a = a;
+	runParts(a.length);
+	this.a = null;
+	return globalMax;
+    } // end getMax
+
+    void reducePart(int id, int startInd, int stopInd) {
+	localMaxArray[id] = SeqAlgo.getMax(a, startInd, stopInd);
+    } // end reducePart
+
+    void combineParts() {
+	double max = localMaxArray[0];
+	for (int i = 1; i < nThreads; i++) {
+	    max = Math.max(max, localMaxArray[i]);
+	}
+	globalMax = max;
+    } // end combineParts
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "A more realistic \"Find max\" algorithm: double";
+    }
+} // end Algo2Double
@@ -0,0 +1,51 @@
+/**
+ * Implements the find max algorithm of Algo2 for arrays of floats,
+ * as Algo2Long does for longs. The local maxima are combined with
+ * Math.max, which gives NaN if any element is NaN and orders -0.0
+ * below 0.0.
+ */
+class Algo2Float extends Algo2Base implements FindMaxFloat {
+    float[] a;
+    float[] localMaxArray;
+    float globalMax;
+
+    Algo2Float() {
+	this(Algo2.defaultThreads());
+    }
+
+    Algo2Float(int nThreads) {
+	super(nThreads, "float");
+	localMaxArray = new float[nThreads];
+    }
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max, or NaN if an element is NaN.
+     */
+    public float getMax(float[] a) {
+	this.a = a;
+	runParts(a.length);
+	this.a = null;
+	return globalMax;
+    } // end getMax
+
+    void reducePart(int id, int startInd, int stopInd) {
+	localMaxArray[id] = SeqAlgo.getMax(a, startInd, stopInd);
+    } // end reducePart
+
+    void combineParts() {
+	float max = localMaxArray[0];
+	for (int i = 1; i < nThreads; i++) {
+	    max = Math.max(max, localMaxArray[i]);
+	}
+	globalMax = max;
+    } // end combineParts
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "A more realistic \"Find max\" algorithm: float";
+    }
+} // end Algo2Float
@@ -0,0 +1,62 @@
+/**
+ * Implements the find max algorithm of Algo2 for arrays of longs.
+ * Each thread finds the max of its part with SeqAlgo.getMax, and
+ * thread 0 combines the local maxima. The threads are run by
+ * Algo2Base, as for Algo2Float and Algo2Double.
+ */
+class Algo2Long extends Algo2Base implements FindMaxLong {
+    long[] a;  // The array of the current call.
+    long[] localMaxArray;
+    long globalMax;
+
+    Algo2Long() {
+	this(Algo2.defaultThreads());
+    }
+
+    /**
+     * @param nThreads: Nr of threads to split the array between.
+     */
+    Algo2Long(int nThreads) {
+	super(nThreads, "long");
+	localMaxArray = new long[nThreads];
+    }
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max
+     */
+    public long getMax(long[] a) {
+	this.a = a;
+	runParts(a.length);
+	this.a = null;
+	return globalMax;
+    } // end getMax
+
+    /**
+     * Find the max of a part of the array.
+     */
+    void reducePart(int id, int startInd, int stopInd) {
+	localMaxArray[id] = SeqAlgo.getMax(a, startInd, stopInd);
+    } // end reducePart
+
+    /**
+     * Find the global max of the local maxima.
+     */
+    void combineParts() {
+	long max = localMaxArray[0];
+	for (int i = 1; i < nThreads; i++) {
+	    if (localMaxArray[i] > max) {
+		max = localMaxArray[i];
+	    }
+	}
+	globalMax = max;
+    } // end combineParts
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "A more realistic \"Find max\" algorithm: long";
+    }
+} // end Algo2Long
@@ -2,9 +2,23 @@ import java.util.Random;
 import java.util.Arrays;
 import java.lang.Runtime;
 import java.lang.Math;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Class for executing empirical analysis on the find max algorithm.
+ * NB: SimdAlgo uses the Vector API, so compile and run with
+ * --add-modules jdk.incubator.vector. The MemorySegment versions are
+ * in the segment directory, and are verified by SegmentTester there.
  */
 class AlgoTester {
     final int MAXVAL = 10000;  // In the array.
@@ -19,12 +33,46 @@ class AlgoTester {
 
 	/* Verify the implementations. */
 	//tester.verifyAll();
+	//tester.verifyStats();
+	//tester.verifyArgMax();
+	//tester.verifySlidingWindow();
+	//tester.verifyPrimitives();
 
 	/* Test algo1 and algo2. */
 	tester.analyzeAll();
 
+	/* Test algo2 with persistent worker threads. */
+	//tester.analyzeAlgo2Persistent();
+
+	/* Test the fork/join algorithm. */
+	//tester.analyzeForkJoin();
+
+	/* Test the self-calibrating algorithm. */
+	//tester.analyzeAdaptive("../Kjoretider/calibration.txt");
+
+	/* Test the SIMD kernel for each nr of cores. */
+	//tester.analyzeSimd();
+
+	/* Compare top-k selection with sorting. */
+	//tester.analyzeTopK();
+
+	/* Compare the max accumulator with an AtomicInteger. */
+	//tester.testAccumulator();
+
+	/* Compare the combine step with a barrier and with a tree. */
+	//tester.testCombine();
+
+	/* Test the memory-mapped algorithm on a file. */
+	//tester.analyzeMapped("../Kjoretider/ints.bin", 500000000);
+
 	/* Test algo1 with 1, n and n² threads. */
 	//tester.testThreadCost();
+
+	/* Test algo1 with virtual threads. */
+	//tester.testVirtualThreads();
+
+	/* Test algo1 on the PRAM simulator. */
+	//tester.analyzePram();
     }  // end main
 
     /**
@@ -35,12 +83,22 @@ class AlgoTester {
      */
     void verifyAll() {
 	System.out.println("--- Verifying algorithms ---");
+	Algo2 persistent = new Algo2(true);
+	AdaptiveAlgo adaptive = new AdaptiveAlgo();
 	FindMax[] algos = {
 	    new SeqAlgo(),
 	    new Algo1(),
+	    new Algo1(true),
 	    new Algo2(),
+	    persistent,
+	    new ForkJoinAlgo(),
+	    new SimdAlgo(),
+	    new Algo2(Algo2.defaultThreads(), false, true),
+	    new PramWilkinson(),
 	    new Algo1_1Thread(),
-	    new Algo1_nThreads()
+	    new Algo1_nThreads(),
+	    new Algo1_Blocked(),
+	    adaptive
 	};
 
 	int[] a = new int[1000];
@@ -58,8 +116,171 @@ class AlgoTester {
 		System.exit(1);
 	    }
 	}
+	persistent.close();
+	adaptive.close();
     } // end verifyAll
 
+    /**
+     * Verify the multi-statistic reduction against sequential loops.
+     */
+    void verifyStats() {
+	System.out.println("--- Verifying multi-statistic reduction ---");
+	StatsAlgo algo = new StatsAlgo();
+	Stats st = new Stats();
+	int[] sizes = {1, 2, 3, 10, 1000, 100001};
+
+	for (int size : sizes) {
+	    int[] a = new int[size];
+	    fillArray(a, 1000);
+	    // Max at size/2 and at size - 1 - size/2, which are the same
+	    // index when size is odd.
+	    a[size/2] = 1000;
+	    a[size - 1 - size/2] = 1000;
+	    int min = a[0], argMax = 0;
+	    long sum = 0;
+	    for (int i = 0; i < size; i++) {
+		if (a[i] < min) min = a[i];
+		if (a[i] > a[argMax]) argMax = i;
+		sum += a[i];
+	    }
+
+	    algo.reduce(a, Stats.ALL, st);
+	    if (st.min != min || st.max != 1000 || st.sum != sum
+		|| st.argMax != argMax || st.count != size) {
+		System.out.println("Fail: n = " + size + ", " + st.toString());
+		System.exit(1);
+	    }
+	}
+	algo.close();
+	System.out.println("Success\n");
+    } // end verifyStats
+
+    /**
+     * Verify the argmax implementations. The max occurs several times,
+     * and all implementations must return the lowest of its indices.
+     */
+    void verifyArgMax() {
+	System.out.println("--- Verifying argmax ---");
+	Algo2 persistent = new Algo2(true);
+	StatsAlgo stats = new StatsAlgo();
+	FindArgMax[] algos = {
+	    new SeqAlgo(),
+	    new Algo1(),
+	    new Algo2(),
+	    persistent,
+	    new ForkJoinAlgo(ForkJoinPool.commonPool(), 16),
+	    new SimdAlgo(),
+	    new PramWilkinson(),
+	    new Algo1_Blocked(),
+	    stats
+	};
+
+	int[] a = new int[100]; // Algo1 uses n² threads.
+	fillArray(a, 1000); // All elements are at most 1000.
+	a[97] = 1002;
+	a[41] = 1002;
+	a[63] = 1002; // The lowest index of max is 41.
+
+	int ind;
+	for (FindArgMax tmp : algos) {
+	    System.out.println("Verifying " + tmp.toString());
+	    ind = tmp.getArgMax(a);
+	    if (ind == 41) {
+		System.out.println("Success\n");
+	    } else {
+		System.out.println("Fail: index = " + ind + "\n");
+		System.exit(1);
+	    }
+	}
+	persistent.close();
+	stats.close();
+    } // end verifyArgMax
+
+    /**
+     * Verify the sliding window max against the sequential algorithm
+     * on a copy of the window, for single values and batches.
+     */
+    void verifySlidingWindow() {
+	System.out.println("--- Verifying sliding window max ---");
+	int[] windows = {1, 2, 7, 100};
+	Random random = new Random();
+	FindMax seq = new SeqAlgo();
+
+	for (int w : windows) {
+	    SlidingWindowMax swm = new SlidingWindowMax(w);
+	    int[] stream = new int[10000];
+	    fillArray(stream, 50); // Many equal values.
+	    int n = 0;
+	    while (n < stream.length) {
+		// Push single values and batches of random length.
+		int len = Math.min(random.nextInt(2*w + 2) + 1, stream.length - n);
+		if (random.nextBoolean()) {
+		    for (int i = n; i < n + len; i++) {
+			swm.push(stream[i]);
+		    }
+		} else {
+		    swm.push(stream, n, len);
+		}
+		n += len;
+
+		int[] window = Arrays.copyOfRange(stream, Math.max(0, n - w), n);
+		if (swm.getMax() != seq.getMax(window)) {
+		    System.out.println("Fail: W = " + w + ", n = " + n);
+		    System.exit(1);
+		}
+	    }
+	}
+	System.out.println("Success\n");
+    } // end verifySlidingWindow
+
+    /**
+     * Verify the long, float and double versions of the sequential
+     * algorithm and algo 2, including NaN and signed zeros.
+     */
+    void verifyPrimitives() {
+	System.out.println("--- Verifying long, float and double ---");
+	SeqAlgo seq = new SeqAlgo();
+	Algo2Long parLong = new Algo2Long();
+	Algo2Float parFloat = new Algo2Float();
+	Algo2Double parDouble = new Algo2Double();
+	int n = 1000;
+	boolean ok = true;
+
+	long[] l = new long[n];
+	for (int i = 0; i < n; i++) {
+	    l[i] = i - 5000000000L;
+	}
+	l[403] = 5000000000L;
+	ok &= seq.getMax(l) == 5000000000L && parLong.getMax(l) == 5000000000L;
+
+	float[] f = new float[n];
+	double[] d = new double[n];
+	for (int i = 0; i < n; i++) {
+	    f[i] = -i;
+	    d[i] = -i;
+	}
+	f[0] = -0.0f;
+	d[0] = -0.0;
+	f[n - 1] = 0.0f;
+	d[n - 1] = 0.0;  // 0.0 is the max, not -0.0.
+	ok &= Float.compare(seq.getMax(f), 0.0f) == 0
+	    && Float.compare(parFloat.getMax(f), 0.0f) == 0
+	    && Double.compare(seq.getMax(d), 0.0) == 0
+	    && Double.compare(parDouble.getMax(d), 0.0) == 0;
+
+	f[n/2] = Float.NaN;
+	d[n/2] = Double.NaN;  // NaN wins.
+	ok &= Float.isNaN(seq.getMax(f)) && Float.isNaN(parFloat.getMax(f))
+	    && Double.isNaN(seq.getMax(d)) && Double.isNaN(parDouble.getMax(d));
+
+	if (ok) {
+	    System.out.println("Success\n");
+	} else {
+	    System.out.println("Fail\n");
+	    System.exit(1);
+	}
+    } // end verifyPrimitives
+
     /**
      * Run empirical analysis for the two main parallel algorithms.
      * 1. Wilkinson's algorithm, algo 1.
@@ -114,12 +335,305 @@ class AlgoTester {
      * Analyze algo 2.
     */
     void analyzeAlgo2() {
-	FindMax parAlgo;
-	String fileInfo, folder;
+	analyzeAlgo2(new Algo2(), "algo2");
+    } // end analyzeAlgo2
+
+    /**
+     * Analyze algo 2 with persistent worker threads. The threads are
+     * started once, so the measured times only include the cost of
+     * waking them up.
+     */
+    void analyzeAlgo2Persistent() {
+	Algo2 parAlgo = new Algo2(true);
+	analyzeAlgo2(parAlgo, "algo2_persistent");
+	parAlgo.close();
+    } // end analyzeAlgo2Persistent
+
+    /**
+     * Analyze the fork/join algorithm with the same input sizes as
+     * algo 2, so that the speedups can be compared directly.
+     */
+    void analyzeForkJoin() {
+	analyzeAlgo2(new ForkJoinAlgo(), "forkjoin");
+    } // end analyzeForkJoin
+
+    /**
+     * Analyze the self-calibrating algorithm with the same input sizes
+     * as algo 2.
+     * @param calibration: The calibration file to load or write.
+     */
+    void analyzeAdaptive(String calibration) {
+	AdaptiveAlgo parAlgo = new AdaptiveAlgo(calibration);
+	analyzeAlgo2(parAlgo, "adaptive");
+	parAlgo.close();
+    } // end analyzeAdaptive
+
+    /**
+     * Compare the scalar and the SIMD kernel of algo 2 for each nr of
+     * threads from 1 to nProcs. Print the running times and the gain
+     * of the SIMD kernel.
+     */
+    void analyzeSimd() {
+	final int SIZE = 10000000;
+	Algo2 scalar, simd;
+	double tScalar, tSimd;
+
+	System.out.println("Analyze the SIMD kernel, n = " + SIZE);
+	System.out.format("%-8s%-14s%-14s%-10s\n",
+			  "Threads", "Scalar (ms)", "SIMD (ms)", "Gain");
+	for (int k = 1; k <= nProcs; k++) {
+	    scalar = new Algo2(k, true, false);
+	    simd = new Algo2(k, true, true);
+	    tScalar = analyzeAlgo(scalar, SIZE);
+	    tSimd = analyzeAlgo(simd, SIZE);
+	    scalar.close();
+	    simd.close();
+	    System.out.format("%7d|%13.4f|%13.4f|%-10.4f\n",
+			      k, tScalar, tSimd, tScalar/tSimd);
+	}
+	System.out.println("\n");
+    } // end analyzeSimd
+
+    /**
+     * Compare the parallel top-k selection with sorting a copy of the
+     * array and taking the last k elements. The results are checked
+     * against each other.
+     */
+    void analyzeTopK() {
+	final int SIZE = 10000000;
+	int[] ks = {1, 100, 10000};
+	TopKAlgo algo = new TopKAlgo();
+	double[] tSort = new double[NTESTS], tTopK = new double[NTESTS];
+	long startTime;
+
+	System.out.println("Analyze top-k selection, n = " + SIZE);
+	System.out.format("%-8s%-14s%-14s%-10s\n",
+			  "k", "Sort (ms)", "Top-k (ms)", "Speedup");
+	for (int k : ks) {
+	    for (int i = 0; i < NTESTS; i++) {
+		int[] a = new int[SIZE];
+		fillArray(a, Integer.MAX_VALUE);
+
+		startTime = System.nanoTime();
+		int[] sorted = a.clone();
+		Arrays.sort(sorted);
+		int[] expected = new int[k];
+		for (int j = 0; j < k; j++) {
+		    expected[j] = sorted[SIZE - 1 - j];
+		}
+		tSort[i] = (System.nanoTime() - startTime)/1000000.0;
+
+		startTime = System.nanoTime();
+		int[] top = algo.getTopK(a, k);
+		tTopK[i] = (System.nanoTime() - startTime)/1000000.0;
+
+		if (!Arrays.equals(top, expected)) {
+		    System.out.println("Fail: wrong top-k for k = " + k);
+		    System.exit(1);
+		}
+	    }
+	    double s = getMedian(tSort), t = getMedian(tTopK);
+	    System.out.format("%7d|%13.4f|%13.4f|%-10.4f\n", k, s, t, s/t);
+	}
+	System.out.println("\n");
+    } // end analyzeTopK
+
+    /**
+     * Let 1, ..., nProcs producer threads update a running max, with
+     * a CAS loop on one AtomicInteger and with the striped
+     * MaxAccumulator. The values increase, so every update of the
+     * AtomicInteger writes. Print the throughput in million updates/s.
+     */
+    void testAccumulator() {
+	final int UPDATES = 10000000; // Per thread.
+	System.out.println("Analyze the max accumulator, " + UPDATES +
+			   " updates per thread");
+	System.out.format("%-8s%-16s%-16s\n", "Threads",
+			  "Atomic (M/s)", "Striped (M/s)");
+	for (int p = 1; p <= nProcs; p++) {
+	    AtomicInteger atomic = new AtomicInteger(Integer.MIN_VALUE);
+	    MaxAccumulator acc = new MaxAccumulator();
+	    final int nThreads = p;
+
+	    double tAtomic = runProducers(p, id -> {
+		    for (int i = 0; i < UPDATES; i++) {
+			int x = i*nThreads + id;
+			int cur = atomic.get();
+			while (x > cur && !atomic.compareAndSet(cur, x)) {
+			    cur = atomic.get();
+			}
+		    }
+		});
+	    double tStriped = runProducers(p, id -> {
+		    for (int i = 0; i < UPDATES; i++) {
+			acc.update(i*nThreads + id);
+		    }
+		});
+
+	    int expected = (UPDATES - 1)*p + p - 1;
+	    if (atomic.get() != expected || acc.get() != expected) {
+		System.out.println("Fail: wrong max");
+		System.exit(1);
+	    }
+	    System.out.format("%7d|%15.2f|%15.2f\n", p,
+			      p*UPDATES/tAtomic/1e6, p*UPDATES/tStriped/1e6);
+	}
+	System.out.println("\n");
+    } // end testAccumulator
+
+    /**
+     * Measure the cost of giving every thread the global max of one
+     * value per thread, for k = 1, 2, 4, ... threads up to nProcs.
+     * The barrier version is the one of ParallelRadix: write the slot,
+     * wait by the barrier and let every thread scan all slots; a
+     * second barrier is needed before the slots can be reused. The
+     * tree version is TreeCombiner.allReduceMax. Print the time per
+     * combine in microseconds.
+     */
+    void testCombine() {
+	final int ROUNDS = 20000;
+	System.out.println("Analyze the combine step, " + ROUNDS + " rounds");
+	System.out.format("%-8s%-16s%-16s\n", "Threads",
+			  "Barrier (us)", "Tree (us)");
+	for (int k = 1; k <= nProcs; k = (k < nProcs && 2*k > nProcs) ? nProcs : 2*k) {
+	    final int nThreads = k;
+	    final int[] slots = new int[k];
+	    final CyclicBarrier bar = new CyclicBarrier(k);
+	    final TreeCombiner tree = new TreeCombiner(k);
+	    final int expected = 2*ROUNDS + k - 1;
+
+	    double tBarrier = runProducers(k, id -> {
+		    for (int r = 0; r < ROUNDS; r++) {
+			slots[id] = 2*r + id;
+			awaitBarrier(bar);
+			int max = slots[0];
+			for (int i = 1; i < nThreads; i++) {
+			    if (slots[i] > max) {
+				max = slots[i];
+			    }
+			}
+			awaitBarrier(bar);
+			if (r == ROUNDS - 1 && max != expected - 2) {
+			    System.out.println("Fail: wrong max");
+			    System.exit(1);
+			}
+		    }
+		});
+	    double tTree = runProducers(k, id -> {
+		    for (int r = 0; r < ROUNDS; r++) {
+			long max = tree.allReduceMax(id, 2*r + id);
+			if (r == ROUNDS - 1 && max != expected - 2) {
+			    System.out.println("Fail: wrong max");
+			    System.exit(1);
+			}
+		    }
+		});
+	    System.out.format("%7d|%15.3f|%15.3f\n", k,
+			      tBarrier/ROUNDS*1e6, tTree/ROUNDS*1e6);
+	}
+	System.out.println("\n");
+    } // end testCombine
+
+    /**
+     * Wait by a synchronization barrier.
+     */
+    void awaitBarrier(CyclicBarrier b) {
+	try {
+	    b.await();
+	} catch (Exception e) {
+	    System.out.println("awaitBarrier: " + e.toString());
+	    System.exit(1);
+	}
+    } // end awaitBarrier
+
+    /**
+     * Run a producer body on a number of threads at once.
+     * @param p: Nr of threads.
+     * @param body: The producer, given the thread id.
+     * @return: The running time in seconds.
+     */
+    double runProducers(int p, IntConsumer body) {
+	Thread[] threads = new Thread[p];
+	for (int i = 0; i < p; i++) {
+	    final int id = i;
+	    threads[i] = new Thread(() -> body.accept(id));
+	}
+	long startTime = System.nanoTime();
+	for (Thread t : threads) {
+	    t.start();
+	}
+	joinAll(threads);
+	return (System.nanoTime() - startTime)/1e9;
+    } // end runProducers
+
+    /**
+     * Write a file of random ints, and print the throughput of the
+     * memory-mapped algorithm for 1 thread and nProcs threads. The
+     * median of NTESTS runs is used; the first run may read from disk
+     * while the later ones read from the page cache.
+     * @param filename: The file to write.
+     * @param size: Nr of ints in the file.
+     */
+    void analyzeMapped(String filename, long size) {
+	final int CHUNK = 1 << 20; // Ints written at a time.
+	Random random = new Random();
+	long maxPos = (long) (random.nextDouble()*size);
+
+	// Write the file. All elements are less than MAXVAL, except one.
+	try (FileChannel ch = FileChannel.open(Paths.get(filename),
+					       StandardOpenOption.CREATE,
+					       StandardOpenOption.WRITE,
+					       StandardOpenOption.TRUNCATE_EXISTING)) {
+	    ByteBuffer buf = ByteBuffer.allocateDirect(4*CHUNK)
+		.order(ByteOrder.nativeOrder());
+	    for (long pos = 0; pos < size; pos += CHUNK) {
+		buf.clear();
+		int m = (int) Math.min(CHUNK, size - pos);
+		for (int i = 0; i < m; i++) {
+		    buf.putInt(pos + i == maxPos ? MAXVAL : random.nextInt(MAXVAL));
+		}
+		buf.flip();
+		while (buf.hasRemaining()) {
+		    ch.write(buf);
+		}
+	    }
+	} catch (IOException e) {
+	    System.out.println("analyzeMapped: " + e.toString());
+	    System.exit(1);
+	}
+
+	System.out.println("Analyze the memory-mapped algorithm, " +
+			   (4*size/1e9) + " GB");
+	System.out.format("%-8s%-14s%-10s\n", "Threads", "Time (ms)", "GB/s");
+	int[] nThreads = {1, nProcs};
+	for (int k : nThreads) {
+	    MappedAlgo algo = new MappedAlgo(k, ByteOrder.nativeOrder());
+	    double[] times = new double[NTESTS];
+	    double[] throughputs = new double[NTESTS];
+	    for (int i = 0; i < NTESTS; i++) {
+		if (algo.getMax(filename) != MAXVAL) {
+		    System.out.println("Fail: wrong max");
+		    System.exit(1);
+		}
+		times[i] = algo.lastTime;
+		throughputs[i] = algo.getThroughput();
+	    }
+	    System.out.format("%7d|%13.4f|%-10.4f\n", k, getMedian(times)*1000,
+			      getMedian(throughputs));
+	}
+	System.out.println("\n");
+    } // end analyzeMapped
+
+    /**
+     * Analyze a parallel algorithm with the input sizes used for algo 2.
+     * @param parAlgo: An instance of the FindMax interface.
+     * @param fileInfo: The filename to which the speedup is written, if
+     * TOFILE is true.
+     */
+    void analyzeAlgo2(FindMax parAlgo, String fileInfo) {
+	String folder;
 	int[] sizes;
 
-	parAlgo = new Algo2();
-	fileInfo = "algo2";
 	folder = "../Kjoretider/Algo2/";	
 
 	/* Generate to input sizes to test with.
@@ -143,11 +657,12 @@ class AlgoTester {
     } // end analyzeAlgo2
 
     /**
-     * Compare the Wilkinson's algorithm with two modified versions:
-     * one with n threads and one with 1 thread.
+     * Compare the Wilkinson's algorithm with three modified versions:
+     * one with n threads, one with 1 thread and one with the blocked
+     * all-pairs engine.
      */
     void testThreadCost() {
-	FindMax algo, algo_1Thread, algo_nThreads;
+	FindMax algo, algo_1Thread, algo_nThreads, algo_blocked;
 	String fileInfo, folder;
 	int[] sizes = {1, 2, 4, 6, 8, 10, 25, 50, 75, 100};
 	int[] sizes2 = {1, 2, 4, 6, 8, 10, 25, 50, 75, 100, 250,
@@ -158,6 +673,7 @@ class AlgoTester {
 	algo = new Algo1();
 	algo_1Thread = new Algo1_1Thread();
 	algo_nThreads = new Algo1_nThreads();
+	algo_blocked = new Algo1_Blocked();
 	
 	folder = "../Kjoretider/Algo2/";
 
@@ -167,8 +683,98 @@ class AlgoTester {
 	analyzeAlgo(algo_nThreads, sizes2, fileInfo, folder);
 	fileInfo = "algo1_1_thread";
 	analyzeAlgo(algo_1Thread, sizes3, fileInfo, folder);	
+	fileInfo = "algo1_blocked";
+	analyzeAlgo(algo_blocked, sizes3, fileInfo, folder);
     } // end testThreadCost
 
+    /**
+     * Run Wilkinson's algorithm with virtual threads, and split the
+     * running time into thread cost and comparison work. The thread
+     * cost is measured by starting and joining the same n + n(n-1)
+     * threads with empty bodies, and the comparison work by the n²
+     * comparisons of Algo1_1Thread. The speedup is against SeqAlgo.
+     */
+    void testVirtualThreads() {
+	int[] sizes = {10, 25, 50, 100, 150, 250, 500, 750, 1000, 1500, 2000};
+	FindMax algo = new Algo1(true);
+	FindMax algo_1Thread = new Algo1_1Thread();
+	FindMax seqAlgo = new SeqAlgo();
+
+	System.out.println("Analyze " + algo.toString());
+	System.out.format("%-8s%-14s%-14s%-14s%-10s\n", "n", "Total (ms)",
+			  "Threads (ms)", "Compare (ms)", "Speedup");
+	for (int s : sizes) {
+	    double tTotal = analyzeAlgo(algo, s);
+	    double tCompare = analyzeAlgo(algo_1Thread, s);
+	    double tSeq = analyzeAlgo(seqAlgo, s);
+	    double[] times = new double[NTESTS];
+	    for (int i = 0; i < NTESTS; i++) {
+		times[i] = measureThreadCost(s, true);
+	    }
+	    double tThreads = getMedian(times);
+	    System.out.format("%7d|%13.4f|%13.4f|%13.4f|%-10.6f\n", s,
+			      tTotal, tThreads, tCompare, tSeq/tTotal);
+	}
+	System.out.println("\n");
+    } // end testVirtualThreads
+
+    /**
+     * Start and join threads with empty bodies in the same pattern as
+     * Algo1: n threads, each of which starts and joins n-1 threads.
+     * @param n: The input size.
+     * @param virtual: If true, use virtual threads.
+     * @return: The running time in ms.
+     */
+    double measureThreadCost(int n, boolean virtual) {
+	// A Thread.Builder is not thread safe, but its factory is, so the
+	// n threads share the factory.
+	Thread.Builder builder = virtual ? Thread.ofVirtual() : Thread.ofPlatform();
+	ThreadFactory factory = builder.factory();
+	Runnable empty = () -> { };
+	Runnable p_i = () -> {
+	    Thread[] myThreads = new Thread[n - 1];
+	    for (int j = 0; j < n - 1; j++) {
+		myThreads[j] = factory.newThread(empty);
+		myThreads[j].start();
+	    }
+	    joinAll(myThreads);
+	};
+
+	long startTime = System.nanoTime();
+	Thread[] workerThreads = new Thread[n];
+	for (int i = 0; i < n; i++) {
+	    workerThreads[i] = factory.newThread(p_i);
+	    workerThreads[i].start();
+	}
+	joinAll(workerThreads);
+	return (System.nanoTime() - startTime)/1000000.0;
+    } // end measureThreadCost
+
+    /**
+     * Wait for a set of threads to finish.
+     */
+    void joinAll(Thread[] threads) {
+	for (Thread t : threads) {
+	    try {
+		t.join();
+	    } catch (InterruptedException e) {
+		System.out.println("joinAll: " + e.toString());
+		System.exit(0);
+	    }
+	}
+    } // end joinAll
+
+    /**
+     * Analyze Wilkinson's algorithm on the PRAM simulator, for input
+     * sizes far beyond the limit of Algo1.
+     */
+    void analyzePram() {
+	int[] sizes = {10, 100, 1000, 2500, 5000, 7500, 10000,
+		       25000, 50000, 75000, 100000};
+	String folder = "../Kjoretider/Algo1/";
+	analyzeAlgo(new PramWilkinson(), sizes, "algo1_pram", folder);
+    } // end analyzePram
+
     /**
      * Run empirical analysis of a parallel algorithm for a given set
      * of input sizes.
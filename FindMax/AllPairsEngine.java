@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A parallel engine for all-pairs comparisons over n items. Every item
+ * i starts as a survivor, and the comparison of (i, j) may eliminate i.
+ * The n×n space is split into tiles of BLOCK_I rows and BLOCK_J
+ * columns, so that the columns of a tile stay in L1/L2 cache while the
+ * rows are compared against them. The workers claim tiles from an
+ * atomic counter, and each worker clears eliminated items in a private
+ * bitset. At the end the bitsets are merged with AND, each worker
+ * merging its own range of words.
+ * Subclasses define the comparison in compareTile.
+ */
+abstract class AllPairsEngine {
+    static final int BLOCK_I = 256;   // Rows per tile.
+    static final int BLOCK_J = 4096;  // Columns per tile (16 KB of ints).
+    int nThreads;
+    CyclicBarrier barrier;
+    AtomicInteger nextTile;
+    long[][] localBits;  // One bitset per worker.
+    long[] survivors;    // The merged bitset.
+    int n;
+
+    /**
+     * @param nThreads: Nr of worker threads.
+     */
+    AllPairsEngine(int nThreads) {
+	this.nThreads = nThreads;
+	barrier = new CyclicBarrier(nThreads);
+	nextTile = new AtomicInteger();
+	localBits = new long[nThreads][];
+    }
+
+    /**
+     * Compare the items i0, ..., i1-1 against the items j0, ..., j1-1,
+     * and clear bit i in 'bits' for each item i that is eliminated.
+     * Items already cleared in 'bits' may be skipped.
+     */
+    abstract void compareTile(int i0, int i1, int j0, int j1, long[] bits);
+
+    /**
+     * Run all the comparisons of n items.
+     * @param n: Nr of items.
+     * @return: A bitset with bit i set if item i survived.
+     */
+    long[] run(int n) {
+	this.n = n;
+	int nWords = (n + 63) >> 6;
+	survivors = new long[nWords];
+	nextTile.set(0);
+
+	Thread[] myThreads = new Thread[nThreads];
+	Thread t;
+	int i;
+	for (i = 0; i < nThreads; i++) {
+	    t = new Thread(new Worker(i));
+	    t.start();
+	    myThreads[i] = t;
+	}
+
+	// Wait for threads to finish.
+	for (i = 0; i < nThreads; i++) {
+	    try {
+		myThreads[i].join();
+	    } catch (InterruptedException e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+	long[] res = survivors;
+	survivors = null;
+	for (i = 0; i < nThreads; i++) {
+	    localBits[i] = null;
+	}
+	return res;
+    } // end run
+
+    /**
+     * Return true if bit i is set in a bitset.
+     */
+    static boolean isSet(long[] bits, int i) {
+	return (bits[i >> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Clear bit i in a bitset.
+     */
+    static void clear(long[] bits, int i) {
+	bits[i >> 6] &= ~(1L << i);
+    }
+
+    /**
+     * The calling thread waits by a synchronization barrier.
+     * @param b: The barrier.
+     */
+    void waitByBarrier(CyclicBarrier b) {
+	try {
+	    b.await();
+	} catch (InterruptedException e) {
+	    System.out.println("InterruptedException: " +
+			       e.getMessage());
+	    System.exit(1);
+	} catch (BrokenBarrierException e) {
+	    System.out.println("BrokenBarrierException: " +
+			       e.getMessage());
+	    System.exit(1);
+	}
+    } // end waitByBarrier
+
+    /* Thread class */
+    class Worker implements Runnable {
+	int id;
+
+	Worker(int id) {
+	    this.id = id;
+	}
+
+	public void run() {
+	    // All items start as survivors. The bits after n are cleared.
+	    int nWords = survivors.length;
+	    long[] bits = new long[nWords];
+	    Arrays.fill(bits, -1L);
+	    if ((n & 63) != 0) {
+		bits[nWords - 1] = (1L << (n & 63)) - 1;
+	    }
+	    localBits[id] = bits;
+
+	    // Claim tiles until there are none left. The tiles are
+	    // numbered row block by row block.
+	    int nRowBlocks = (n + BLOCK_I - 1)/BLOCK_I;
+	    int nColBlocks = (n + BLOCK_J - 1)/BLOCK_J;
+	    int nTiles = nRowBlocks*nColBlocks;
+	    int tile;
+	    while ((tile = nextTile.getAndIncrement()) < nTiles) {
+		int i0 = (tile/nColBlocks)*BLOCK_I;
+		int j0 = (tile%nColBlocks)*BLOCK_J;
+		compareTile(i0, Math.min(n, i0 + BLOCK_I),
+			    j0, Math.min(n, j0 + BLOCK_J), bits);
+	    }
+	    waitByBarrier(barrier);
+
+	    // Merge this worker's range of words.
+	    int len = nWords/nThreads;
+	    int startWord = id*len;
+	    int stopWord = (id == nThreads - 1) ? nWords : startWord + len;
+	    for (int w = startWord; w < stopWord; w++) {
+		long word = -1L;
+		for (int k = 0; k < nThreads; k++) {
+		    word &= localBits[k][w];
+		}
+		survivors[w] = word;
+	    }
+	} // end run
+    } // end class Worker
+} // end class AllPairsEngine
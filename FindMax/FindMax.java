@@ -5,3 +5,29 @@ interface FindMax {
     public int getMax(int[] a);
     public String toString();
 }
+
+/**
+ * An interface for implementations that find the position of the
+ * largest element. Ties are resolved to the lowest index, so that
+ * sequential and parallel implementations return the same index.
+ */
+interface FindArgMax {
+    public int getArgMax(int[] a);
+}
+
+/**
+ * Primitive-specialized siblings of FindMax for long, float and
+ * double arrays. For float and double the max follows Math.max: it is
+ * NaN if any element is NaN, and 0.0 is larger than -0.0.
+ */
+interface FindMaxLong {
+    public long getMax(long[] a);
+}
+
+interface FindMaxFloat {
+    public float getMax(float[] a);
+}
+
+interface FindMaxDouble {
+    public double getMax(double[] a);
+}
@@ -0,0 +1,129 @@
+import java.util.concurrent.*;
+
+/**
+ * Implements the find max algorithm as a recursive reduction on a
+ * fork/join pool. The array is split in halves until the parts are
+ * at most 'leafSize' long, and the maxima are combined on the way
+ * back up. Idle threads steal the unsplit halves, so the work is
+ * rebalanced when some cores are busy with other work.
+ */
+class ForkJoinAlgo implements FindMax, FindArgMax {
+    // The smallest part worth a task of its own.
+    static final int MIN_LEAF_SIZE = 4096;
+    // Nr of leaves per thread when the leaf size is not given.
+    static final int LEAVES_PER_THREAD = 8;
+    ForkJoinPool pool;
+    int leafSize; // 0: choose the leaf size from the array length.
+
+    ForkJoinAlgo() {
+	this(ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * @param pool: The pool to run the tasks on.
+     * @param leafSize: Max length of a part scanned sequentially, or
+     * 0 to derive it from the array length and the pool's parallelism.
+     */
+    ForkJoinAlgo(ForkJoinPool pool, int leafSize) {
+	this.pool = pool;
+	this.leafSize = leafSize;
+	System.out.println("ForkJoin: parallelism = " + pool.getParallelism());
+    }
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max
+     */
+    public int getMax(int[] a) {
+	MaxTask task = new MaxTask(a, 0, a.length, getLeafSize(a), false);
+	pool.invoke(task);
+	return task.max;
+    } // end getMax
+
+    /**
+     * Find the lowest index of the maximum element in an array.
+     * @param a: The array.
+     * @return: The index of max
+     */
+    public int getArgMax(int[] a) {
+	MaxTask task = new MaxTask(a, 0, a.length, getLeafSize(a), true);
+	pool.invoke(task);
+	return task.maxInd;
+    } // end getArgMax
+
+    /**
+     * Return the leaf size to use for an array.
+     */
+    int getLeafSize(int[] a) {
+	if (leafSize != 0) {
+	    return leafSize;
+	}
+	return Math.max(MIN_LEAF_SIZE,
+			a.length/(LEAVES_PER_THREAD*pool.getParallelism()));
+    } // end getLeafSize
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Fork/join \"Find max\" algorithm";
+    }
+
+    /* Task class */
+    static class MaxTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	int[] a;
+	int startInd, stopInd, leafSize;
+	boolean findInd; // Also find the index of max.
+	int max, maxInd; // The result.
+
+	MaxTask(int[] a, int start, int stop, int leafSize, boolean findInd) {
+	    this.a = a;
+	    startInd = start; stopInd = stop;
+	    this.leafSize = leafSize;
+	    this.findInd = findInd;
+	}
+
+	protected void compute() {
+	    if (stopInd - startInd <= leafSize) {
+		int localMax = a[startInd];
+		int localInd = startInd;
+		if (findInd) {
+		    for (int i = startInd + 1; i < stopInd; i++) {
+			if (a[i] > localMax) {
+			    localMax = a[i];
+			    localInd = i;
+			}
+		    }
+		} else {
+		    for (int i = startInd + 1; i < stopInd; i++) {
+			if (a[i] > localMax) {
+			    localMax = a[i];
+			}
+		    }
+		}
+		max = localMax;
+		maxInd = localInd;
+		return;
+	    }
+
+	    // Fork the right half and compute the left half ourselves.
+	    int mid = (startInd + stopInd) >>> 1;
+	    MaxTask left = new MaxTask(a, startInd, mid, leafSize, findInd);
+	    MaxTask right = new MaxTask(a, mid, stopInd, leafSize, findInd);
+	    right.fork();
+	    left.compute();
+	    right.join();
+
+	    // The left half wins ties, which keeps the lowest index.
+	    if (right.max > left.max) {
+		max = right.max;
+		maxInd = right.maxInd;
+	    } else {
+		max = left.max;
+		maxInd = left.maxInd;
+	    }
+	} // end compute
+    } // end class MaxTask
+} // end class ForkJoinAlgo
@@ -0,0 +1,184 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * Implements the find max algorithm for a binary file of ints which
+ * may be larger than the heap. The file is split between the threads
+ * as in Algo2, and each thread maps its own part of the file with
+ * FileChannel.map and scans it through an IntBuffer view. A part is
+ * mapped in segments of at most SEGMENT_SIZE bytes, since a single
+ * mapping is limited to 2 GB. Nothing is copied into heap arrays.
+ */
+class MappedAlgo {
+    static final int SEGMENT_SIZE = 1 << 30; // Bytes, a multiple of 4.
+    int nThreads;
+    ByteOrder order;
+    CyclicBarrier barrier;
+    int[] localMaxArray;
+    int globalMax;
+    FileChannel channel;
+    double lastTime; // Running time of the last call in seconds.
+    long lastBytes;  // Bytes scanned by the last call.
+
+    MappedAlgo() {
+	this(Algo2.defaultThreads(), ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param nThreads: Nr of threads to split the file between.
+     * @param order: The byte order of the ints in the file.
+     */
+    MappedAlgo(int nThreads, ByteOrder order) {
+	this.nThreads = nThreads;
+	this.order = order;
+	System.out.println("MappedAlgo: nThreads = " + nThreads);
+	localMaxArray = new int[nThreads];
+	barrier = new CyclicBarrier(nThreads);
+    }
+
+    /**
+     * Find the maximum element in a file of ints.
+     * @param filename: The file.
+     * @return: Max
+     */
+    int getMax(String filename) {
+	long startTime = System.nanoTime();
+	try {
+	    channel = FileChannel.open(Paths.get(filename),
+				       StandardOpenOption.READ);
+	} catch (IOException e) {
+	    System.out.println("getMax: " + e.toString());
+	    System.exit(1);
+	}
+
+	// Delimit each thread's part of the file, in nr of ints.
+	long n = 0;
+	try {
+	    n = channel.size()/4;
+	} catch (IOException e) {
+	    System.out.println("getMax: " + e.toString());
+	    System.exit(1);
+	}
+	long startInd = 0, stopInd;
+	long len = n/nThreads;
+	Thread[] myThreads = new Thread[nThreads];
+	Thread t;
+	int i;
+	for (i = 0; i < nThreads - 1; i++) {
+	    stopInd = startInd + len;
+	    t = new Thread(new Para(i, startInd, stopInd));
+	    t.start();
+	    myThreads[i] = t;
+	    startInd = stopInd;
+	}
+
+	// Start the last thread.
+	t = new Thread(new Para(i, startInd, n));
+	t.start();
+	myThreads[i] = t;
+
+	// Wait for threads to finish.
+	for (i = 0; i < nThreads; i++) {
+	    try {
+		myThreads[i].join();
+	    } catch (InterruptedException e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+
+	try {
+	    channel.close();
+	} catch (IOException e) {
+	    System.out.println("getMax: " + e.toString());
+	    System.exit(1);
+	}
+	channel = null;
+	lastBytes = 4*n;
+	lastTime = (System.nanoTime() - startTime)/1e9;
+	return globalMax;
+    } // end getMax
+
+    /**
+     * Return the throughput of the last call to getMax in GB/s.
+     */
+    double getThroughput() {
+	return lastBytes/lastTime/1e9;
+    } // end getThroughput
+
+    /**
+     * The calling thread waits by a synchronization barrier.
+     * @param b: The barrier.
+     */
+    void waitByBarrier(CyclicBarrier b) {
+	try {
+	    b.await();
+	} catch (InterruptedException e) {
+	    System.out.println("InterruptedException: " +
+			       e.getMessage());
+	    System.exit(1);
+	} catch (BrokenBarrierException e) {
+	    System.out.println("BrokenBarrierException: " +
+			       e.getMessage());
+	    System.exit(1);
+	}
+    } // end waitByBarrier
+
+    /* Thread class */
+    class Para implements Runnable {
+	int id;
+	long startInd, stopInd; // Int indices in the file.
+
+	Para(int id, long start, long stop) {
+	    this.id = id;
+	    startInd = start; stopInd = stop;
+	}
+
+	public void run() {
+	    // Find local max, one mapped segment at a time.
+	    int localMax = Integer.MIN_VALUE;
+	    long pos = 4*startInd;
+	    long stopPos = 4*stopInd;
+	    while (pos < stopPos) {
+		long size = Math.min(SEGMENT_SIZE, stopPos - pos);
+		IntBuffer buf = null;
+		try {
+		    buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, size)
+			.order(order).asIntBuffer();
+		} catch (IOException e) {
+		    System.out.println("run: " + e.toString());
+		    System.exit(1);
+		}
+		int m = buf.limit();
+		for (int i = 0; i < m; i++) {
+		    if (buf.get(i) > localMax) {
+			localMax = buf.get(i);
+		    }
+		}
+		pos += size;
+	    }
+	    localMaxArray[id] = localMax;
+	    waitByBarrier(barrier);
+
+	    // Find global max.
+	    if (id == 0) {
+		for (int i = 0; i < localMaxArray.length; i++) {
+		    if (localMaxArray[i] > localMax) {
+			localMax = localMaxArray[i];
+		    }
+		}
+		globalMax = localMax;
+	    }
+	} // end run
+    } // end class Para
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Memory-mapped \"Find max\" algorithm";
+    }
+} // end class MappedAlgo
@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A running maximum that many threads can update at once. Like
+ * LongAccumulator, the value is spread over a number of cells, and
+ * each thread updates the cell picked by a hash of its thread id, so
+ * that threads seldom write to the same cell. The cells are PAD ints
+ * apart, so no two cells share a cache line. get() returns the max
+ * over the cells.
+ * An update first reads its cell and returns if the cell already
+ * holds a value >= x, so most updates do not write at all. If a CAS
+ * fails, the thread moves on to the next cell; since the cells only
+ * grow, the update is done as soon as any cell holds a value >= x.
+ */
+class MaxAccumulator {
+    static final int PAD = 16; // Ints per cell: 64 bytes.
+    AtomicIntegerArray cells;
+    int mask;                  // nCells - 1, nCells a power of two.
+
+    MaxAccumulator() {
+	this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param nCells: Nr of cells, rounded up to a power of two.
+     */
+    MaxAccumulator(int nCells) {
+	int n = 1;
+	while (n < nCells) {
+	    n <<= 1;
+	}
+	mask = n - 1;
+	cells = new AtomicIntegerArray(n*PAD);
+	reset();
+    }
+
+    /**
+     * Update the max with a value.
+     * @param x: The value.
+     */
+    void update(int x) {
+	int i = cellIndex();
+	int cur = cells.get(i*PAD);
+	while (x > cur) {
+	    if (cells.compareAndSet(i*PAD, cur, x)) {
+		return;
+	    }
+	    i = (i + 1) & mask;  // Contention: try the next cell.
+	    cur = cells.get(i*PAD);
+	}
+    } // end update
+
+    /**
+     * Return the max of all values, or Integer.MIN_VALUE if there are
+     * none. Updates that run at the same time may or may not be seen.
+     */
+    int get() {
+	int max = Integer.MIN_VALUE;
+	for (int i = 0; i <= mask; i++) {
+	    int v = cells.get(i*PAD);
+	    if (v > max) {
+		max = v;
+	    }
+	}
+	return max;
+    } // end get
+
+    /**
+     * Reset the max to Integer.MIN_VALUE. Must not run at the same
+     * time as updates.
+     */
+    void reset() {
+	for (int i = 0; i <= mask; i++) {
+	    cells.set(i*PAD, Integer.MIN_VALUE);
+	}
+    } // end reset
+
+    /**
+     * Return the cell of the calling thread.
+     */
+    int cellIndex() {
+	long id = Thread.currentThread().threadId();
+	return (int) ((id*0x9E3779B97F4A7C15L) >>> 32) & mask;
+    } // end cellIndex
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Striped max accumulator";
+    }
+} // end class MaxAccumulator
@@ -0,0 +1,28 @@
+/**
+ * An interface for algorithms run by the PRAM simulator. The algorithm
+ * is a fixed sequence of synchronous steps, and each step is executed
+ * by a number of virtual processors numbered 0, ..., p-1.
+ * The simulator gives common-CRCW semantics: processors of a step may
+ * read the same cell, and may write the same cell as long as they all
+ * write the same value. All writes of a step are visible to the next
+ * step. A step must not read a cell that is written in the same step;
+ * split such a step in two.
+ */
+interface PramAlgorithm {
+    /**
+     * Return the nr of steps.
+     */
+    public int getSteps();
+
+    /**
+     * Return the nr of virtual processors in a step.
+     */
+    public long getProcessors(int step);
+
+    /**
+     * Execute the virtual processors first, ..., last-1 of a step.
+     * The simulator calls this from several threads at once with
+     * disjoint ranges.
+     */
+    public void execute(int step, long first, long last);
+}
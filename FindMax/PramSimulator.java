@@ -0,0 +1,95 @@
+import java.util.concurrent.*;
+
+/**
+ * Runs a PRAM algorithm with any nr of virtual processors on a fixed
+ * nr of worker threads. In each step, the virtual processors are split
+ * into one contiguous range per worker, and the workers wait by a
+ * barrier before the next step. This keeps the nr of real threads at
+ * k regardless of the nr of virtual processors.
+ */
+class PramSimulator {
+    int nWorkers;
+    CyclicBarrier barrier;
+    PramAlgorithm algo;
+
+    PramSimulator() {
+	this(Algo2.defaultThreads());
+    }
+
+    /**
+     * @param nWorkers: Nr of worker threads.
+     */
+    PramSimulator(int nWorkers) {
+	this.nWorkers = nWorkers;
+	barrier = new CyclicBarrier(nWorkers);
+    }
+
+    /**
+     * Run all the steps of a PRAM algorithm.
+     * @param algo: The algorithm.
+     */
+    void run(PramAlgorithm algo) {
+	this.algo = algo;
+	Thread[] myThreads = new Thread[nWorkers];
+	Thread t;
+	int i;
+	for (i = 0; i < nWorkers; i++) {
+	    t = new Thread(new Worker(i));
+	    t.start();
+	    myThreads[i] = t;
+	}
+
+	// Wait for threads to finish.
+	for (i = 0; i < nWorkers; i++) {
+	    try {
+		myThreads[i].join();
+	    } catch (InterruptedException e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+	this.algo = null;
+    } // end run
+
+    /**
+     * The calling thread waits by a synchronization barrier.
+     * @param b: The barrier.
+     */
+    void waitByBarrier(CyclicBarrier b) {
+	try {
+	    b.await();
+	} catch (InterruptedException e) {
+	    System.out.println("InterruptedException: " +
+			       e.getMessage());
+	    System.exit(1);
+	} catch (BrokenBarrierException e) {
+	    System.out.println("BrokenBarrierException: " +
+			       e.getMessage());
+	    System.exit(1);
+	}
+    } // end waitByBarrier
+
+    /* Thread class */
+    class Worker implements Runnable {
+	int id;
+
+	Worker(int id) {
+	    this.id = id;
+	}
+
+	public void run() {
+	    int nSteps = algo.getSteps();
+	    for (int step = 0; step < nSteps; step++) {
+		// Delimit this worker's virtual processors.
+		long p = algo.getProcessors(step);
+		long len = p/nWorkers;
+		long first = id*len;
+		long last = (id == nWorkers - 1) ? p : first + len;
+		if (first < last) {
+		    algo.execute(step, first, last);
+		}
+		waitByBarrier(barrier);  // Synch
+	    }
+	} // end run
+    } // end class Worker
+} // end class PramSimulator
@@ -0,0 +1,115 @@
+/**
+ * Wilkinson's algorithm run on the PRAM simulator. The n² processors
+ * of the comparison step are virtual, so the algorithm can be run for
+ * n far beyond the thread limit of the JVM.
+ * Step 0: n processors set m[i] = true.
+ * Step 1: n² processors; processor (i, j) clears m[i] if a[i] < a[j],
+ *         or a[i] == a[j] and j < i. All writers write false.
+ * Step 2: n processors; the one with m[i] still set writes max.
+ */
+class PramWilkinson implements FindMax, FindArgMax, PramAlgorithm {
+    PramSimulator simulator;
+    int[] a;
+    boolean[] m;
+    int n;
+    int max, maxInd;
+
+    PramWilkinson() {
+	this(new PramSimulator());
+    }
+
+    /**
+     * @param simulator: The simulator to run the algorithm on.
+     */
+    PramWilkinson(PramSimulator simulator) {
+	this.simulator = simulator;
+	System.out.println("PRAM: nWorkers = " + simulator.nWorkers);
+    }
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: The maximum element.
+     */
+    public int getMax(int[] a) {
+	this.a = a;
+	n = a.length;
+	m = new boolean[n];
+	max = -1; // Reset max from last call.
+	maxInd = -1;
+	simulator.run(this);
+	this.a = null;
+	m = null;
+	return max;
+    } // end getMax
+
+    /**
+     * Find the lowest index of the maximum element in an array.
+     * @param a: The array.
+     * @return: The index of max.
+     */
+    public int getArgMax(int[] a) {
+	getMax(a);
+	return maxInd;
+    } // end getArgMax
+
+    public int getSteps() {
+	return 3;
+    }
+
+    public long getProcessors(int step) {
+	return (step == 1) ? (long) n*n : n;
+    }
+
+    public void execute(int step, long first, long last) {
+	if (step == 0) {
+	    for (int i = (int) first; i < last; i++) {
+		m[i] = true;
+	    }
+	} else if (step == 1) {
+	    // Processor p is (i, j) = (p/n, p%n). The writes of the
+	    // processors in a row are combined into one, which gives the
+	    // same result since they all write false.
+	    int i = (int) (first/n);
+	    int j = (int) (first%n);
+	    long p = first;
+	    while (p < last) {
+		int stopJ = (int) Math.min(n, j + (last - p));
+		int ai = a[i];
+		boolean keep = true;
+		// Ties clear m[i] only for j < i.
+		int mid = Math.max(j, Math.min(stopJ, i));
+		for (int jj = j; jj < mid; jj++) {
+		    if (ai <= a[jj]) {
+			keep = false;
+		    }
+		}
+		for (int jj = mid; jj < stopJ; jj++) {
+		    if (ai < a[jj]) {
+			keep = false;
+		    }
+		}
+		if (!keep) {
+		    m[i] = false;
+		}
+		p += stopJ - j;
+		i++;
+		j = 0;
+	    }
+	} else {
+	    for (int i = (int) first; i < last; i++) {
+		if (m[i]) {
+		    max = a[i];
+		    maxInd = i;
+		}
+	    }
+	}
+    } // end execute
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Wilkinson's algorithm: PRAM simulator";
+    }
+} // end class PramWilkinson
@@ -1,7 +1,8 @@
 /**
  * Implement the sequential solution.
  */
-class SeqAlgo implements FindMax {
+class SeqAlgo implements FindMax, FindArgMax,
+			FindMaxLong, FindMaxFloat, FindMaxDouble {
 
     /**
      * Find the maximum element in an array.
@@ -20,6 +21,114 @@ class SeqAlgo implements FindMax {
 	return maximum;
     } // end getMax
 
+    /**
+     * Find the lowest index of the maximum element in an array.
+     * @param a: The array.
+     * @return: The index of max
+     */
+    public int getArgMax(int[] a) {
+	int maxInd = 0;
+	int n = a.length;
+
+	for (int i = 1; i < n; i++) {
+	    if (a[i] > a[maxInd]) {
+		maxInd = i;
+	    }
+	}
+	return maxInd;
+    } // end getArgMax
+
+    /**
+     * Find the maximum element in an array of longs.
+     * @param a: The array.
+     * @return: Max
+     */
+    public long getMax(long[] a) {
+	return getMax(a, 0, a.length);
+    } // end getMax
+
+    /**
+     * Find the maximum element in an array of floats.
+     * @param a: The array.
+     * @return: Max, or NaN if an element is NaN.
+     */
+    public float getMax(float[] a) {
+	return getMax(a, 0, a.length);
+    } // end getMax
+
+    /**
+     * Find the maximum element in an array of doubles.
+     * @param a: The array.
+     * @return: Max, or NaN if an element is NaN.
+     */
+    public double getMax(double[] a) {
+	return getMax(a, 0, a.length);
+    } // end getMax
+
+    /**
+     * Find the maximum element in a part of an array of longs.
+     * @param a: The array.
+     * @param startInd: The first index of the part.
+     * @param stopInd: The index after the last index of the part.
+     * @return: Max
+     */
+    static long getMax(long[] a, int startInd, int stopInd) {
+	long maximum = a[startInd];
+	for (int i = startInd + 1; i < stopInd; i++) {
+	    if (a[i] > maximum) {
+		maximum = a[i];
+	    }
+	}
+	return maximum;
+    } // end getMax
+
+    /**
+     * Find the maximum element in a part of an array of floats, with
+     * the semantics of Math.max. The common case costs one compare;
+     * NaN and signed zeros are only checked when a[i] > max is false.
+     * @param a: The array.
+     * @param startInd: The first index of the part.
+     * @param stopInd: The index after the last index of the part.
+     * @return: Max, or NaN if an element is NaN.
+     */
+    static float getMax(float[] a, int startInd, int stopInd) {
+	float maximum = a[startInd];
+	for (int i = startInd + 1; i < stopInd; i++) {
+	    float v = a[i];
+	    if (v > maximum) {
+		maximum = v;
+	    } else if (v != v) {
+		return v;  // NaN
+	    } else if (v == 0.0f && maximum == 0.0f) {
+		maximum = Math.max(maximum, v);  // 0.0 > -0.0
+	    }
+	}
+	return maximum;
+    } // end getMax
+
+    /**
+     * Find the maximum element in a part of an array of doubles, with
+     * the semantics of Math.max.
+     * @param a: The array.
+     * @param startInd: The first index of the part.
+     * @param stopInd: The index after the last index of the part.
+     * @return: Max, or NaN if an element is NaN.
+     */
+    static double getMax(double[] a, int startInd, int stopInd) {
+	double maximum = a[startInd];
+	for (int i = startInd + 1; i < stopInd; i++) {
+	    double v = a[i];
+	    if (v > maximum) {
+		maximum = v;
+	    } else if (v != v) {
+		return v;  // NaN
+	    } else if (v == 0.0 && maximum == 0.0) {
+		maximum = Math.max(maximum, v);  // 0.0 > -0.0
+	    }
+	}
+	return maximum;
+    } // end getMax
+
     /**
      * Return a string identifying the algorithm.
      */
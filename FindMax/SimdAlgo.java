@@ -0,0 +1,84 @@
+import jdk.incubator.vector.*;
+
+/**
+ * Implement the sequential solution with the JDK Vector API. The
+ * array is scanned with a lane-wise max, and the lanes are reduced
+ * to one value at the end. The elements that do not fill a whole
+ * vector are handled by a scalar tail loop.
+ * NB: Compile and run with --add-modules jdk.incubator.vector.
+ */
+class SimdAlgo implements FindMax, FindArgMax {
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max
+     */
+    public int getMax(int[] a) {
+	return getMax(a, 0, a.length);
+    } // end getMax
+
+    /**
+     * Find the lowest index of the maximum element in an array. The
+     * max is found first, and then the first lane equal to it.
+     * @param a: The array.
+     * @return: The index of max
+     */
+    public int getArgMax(int[] a) {
+	int maximum = getMax(a, 0, a.length);
+	int n = a.length;
+	int i = 0;
+	int upper = SPECIES.loopBound(n);
+
+	for (; i < upper; i += SPECIES.length()) {
+	    VectorMask<Integer> eq = IntVector.fromArray(SPECIES, a, i).eq(maximum);
+	    if (eq.anyTrue()) {
+		return i + eq.firstTrue();
+	    }
+	}
+	for (; i < n; i++) {
+	    if (a[i] == maximum) {
+		break;
+	    }
+	}
+	return i;
+    } // end getArgMax
+
+    /**
+     * Find the maximum element in a part of an array. Also used as
+     * the per-thread kernel of the parallel algorithm.
+     * @param a: The array.
+     * @param startInd: The first index of the part.
+     * @param stopInd: The index after the last index of the part.
+     * @return: Max
+     */
+    static int getMax(int[] a, int startInd, int stopInd) {
+	int maximum = a[startInd];
+	int i = startInd;
+	int upper = startInd + SPECIES.loopBound(stopInd - startInd);
+
+	if (i < upper) {
+	    IntVector vMax = IntVector.fromArray(SPECIES, a, i);
+	    for (i += SPECIES.length(); i < upper; i += SPECIES.length()) {
+		vMax = vMax.max(IntVector.fromArray(SPECIES, a, i));
+	    }
+	    maximum = vMax.reduceLanes(VectorOperators.MAX);
+	}
+
+	// Scalar tail.
+	for (; i < stopInd; i++) {
+	    if (a[i] > maximum) {
+		maximum = a[i];
+	    }
+	}
+	return maximum;
+    } // end getMax
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Sequential solution: SIMD";
+    }
+} // end SimdAlgo
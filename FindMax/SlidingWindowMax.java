@@ -0,0 +1,121 @@
+/**
+ * Keeps the maximum of the last W values of a stream of ints. The
+ * candidates for the max are kept in a monotonic deque: the values
+ * decrease from front to back, and a new value removes the values at
+ * the back that are not larger than itself. Each value is added and
+ * removed at most once, so push and getMax take amortized O(1) time.
+ * The deque is stored in two primitive ring buffers of length W, so
+ * nothing is boxed or allocated after construction.
+ * The methods are synchronized, so several producer threads may push
+ * to the same instance; push(int[]) takes the lock once per batch.
+ */
+class SlidingWindowMax {
+    int w;          // The window size.
+    int[] values;   // Ring buffer of the values in the deque.
+    long[] pos;     // Ring buffer of their positions in the stream.
+    int head, size; // The front of the deque and nr of elements in it.
+    long count;     // Nr of values pushed so far.
+
+    /**
+     * @param w: The window size.
+     */
+    SlidingWindowMax(int w) {
+	if (w < 1) {
+	    throw new IllegalArgumentException("window size must be >= 1");
+	}
+	this.w = w;
+	values = new int[w];
+	pos = new long[w];
+    }
+
+    /**
+     * Add a value to the stream.
+     * @param v: The value.
+     */
+    synchronized void push(int v) {
+	add(v);
+    } // end push
+
+    /**
+     * Add a batch of values to the stream.
+     * @param a: The values, in stream order.
+     */
+    void push(int[] a) {
+	push(a, 0, a.length);
+    } // end push
+
+    /**
+     * Add a batch of values to the stream. Only the last W values of
+     * a batch can be in the window afterwards, so the values before
+     * them are skipped.
+     * @param a: The array holding the values.
+     * @param off: The index of the first value.
+     * @param len: Nr of values.
+     */
+    synchronized void push(int[] a, int off, int len) {
+	if (len >= w) {
+	    // The whole window is replaced.
+	    head = 0;
+	    size = 0;
+	    count += len - w;
+	    off += len - w;
+	    len = w;
+	}
+	for (int i = off; i < off + len; i++) {
+	    add(a[i]);
+	}
+    } // end push
+
+    /**
+     * Return the max of the last W values.
+     */
+    synchronized int getMax() {
+	if (size == 0) {
+	    throw new IllegalStateException("no values pushed");
+	}
+	return values[head];
+    } // end getMax
+
+    /**
+     * Return the nr of values pushed so far.
+     */
+    synchronized long getCount() {
+	return count;
+    } // end getCount
+
+    /**
+     * Add a value to the deque.
+     * @param v: The value.
+     */
+    void add(int v) {
+	// Remove the front if it leaves the window with this value.
+	if (size > 0 && pos[head] <= count - w) {
+	    head = (head + 1 == w) ? 0 : head + 1;
+	    size--;
+	}
+	// Remove the values at the back that can never be the max again.
+	while (size > 0 && values[index(size - 1)] <= v) {
+	    size--;
+	}
+	int back = index(size);
+	values[back] = v;
+	pos[back] = count;
+	size++;
+	count++;
+    } // end add
+
+    /**
+     * Return the ring buffer index of the i-th element in the deque.
+     */
+    int index(int i) {
+	int ind = head + i;
+	return (ind >= w) ? ind - w : ind;
+    } // end index
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Sliding window max, W = " + w;
+    }
+} // end class SlidingWindowMax
@@ -0,0 +1,39 @@
+/**
+ * The result of a multi-statistic reduction over an int array. Only
+ * the statistics selected in 'which' are valid. An instance can be
+ * passed to StatsAlgo.reduce again to avoid allocating a new result
+ * on each call.
+ */
+class Stats {
+    // Flags for selecting the statistics.
+    static final int MIN = 1;
+    static final int MAX = 2;
+    static final int SUM = 4;
+    static final int ARGMAX = 8;  // Lowest index of the max.
+    static final int COUNT = 16;  // Nr of elements.
+    static final int ALL = MIN | MAX | SUM | ARGMAX | COUNT;
+
+    int which;
+    int min, max, argMax;
+    long sum, count;
+
+    /**
+     * Return true if the statistic 'flag' has been computed.
+     */
+    boolean has(int flag) {
+	return (which & flag) != 0;
+    }
+
+    /**
+     * Return a string with the computed statistics.
+     */
+    public String toString() {
+	String s = "Stats:";
+	if (has(MIN)) s += " min=" + min;
+	if (has(MAX)) s += " max=" + max;
+	if (has(SUM)) s += " sum=" + sum;
+	if (has(ARGMAX)) s += " argMax=" + argMax;
+	if (has(COUNT)) s += " count=" + count;
+	return s;
+    }
+} // end class Stats
@@ -0,0 +1,177 @@
+import java.util.concurrent.*;
+
+/**
+ * Computes a selected set of statistics (min, max, sum, argmax, count)
+ * over an int array in one parallel pass. The array is split between
+ * the threads as in Algo2, each thread reduces its part into its slot
+ * of the local arrays, and thread 0 combines the slots after the
+ * barrier. The threads are the persistent workers of a WorkerPool,
+ * and the local arrays are allocated once, so a call to reduce with a
+ * reused Stats object does not allocate. The instance must be
+ * released with close().
+ */
+class StatsAlgo implements FindMax, FindArgMax, PartTask, AutoCloseable {
+    int nThreads;
+    CyclicBarrier barrier;
+    WorkerPool pool;
+
+    // The current call.
+    int[] a;
+    int which;
+    Stats result;
+    Stats stats = new Stats(); // Reused by getMax and getArgMax.
+
+    // One slot per thread.
+    int[] localMinArray;
+    int[] localMaxArray;
+    int[] localArgMaxArray;
+    long[] localSumArray;
+
+    StatsAlgo() {
+	this(Algo2.defaultThreads());
+    }
+
+    /**
+     * @param nThreads: Nr of threads to split the array between.
+     */
+    StatsAlgo(int nThreads) {
+	this.nThreads = nThreads;
+	System.out.println("StatsAlgo: nThreads = " + nThreads);
+	localMinArray = new int[nThreads];
+	localMaxArray = new int[nThreads];
+	localArgMaxArray = new int[nThreads];
+	localSumArray = new long[nThreads];
+	barrier = new CyclicBarrier(nThreads);
+	pool = new WorkerPool(nThreads);
+    }
+
+    /**
+     * Compute the selected statistics of an array.
+     * @param a: The array.
+     * @param which: The statistics to compute, e.g. Stats.MIN | Stats.SUM.
+     * @return: A new Stats object with the result.
+     */
+    Stats reduce(int[] a, int which) {
+	return reduce(a, which, new Stats());
+    } // end reduce
+
+    /**
+     * Compute the selected statistics of an array into an existing
+     * result object.
+     * @param a: The array.
+     * @param which: The statistics to compute.
+     * @param result: The object to store the result in.
+     * @return: result
+     */
+    Stats reduce(int[] a, int which, Stats result) {
+	if (pool.closed) {
+	    throw new IllegalStateException("StatsAlgo is closed");
+	}
+	this.a = a;
+	this.which = which;
+	this.result = result;
+	pool.run(this);
+	this.a = null;
+	this.result = null;
+	return result;
+    } // end reduce
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max
+     */
+    public int getMax(int[] a) {
+	return reduce(a, Stats.MAX, stats).max;
+    } // end getMax
+
+    /**
+     * Find the lowest index of the maximum element in an array.
+     * @param a: The array.
+     * @return: The index of max
+     */
+    public int getArgMax(int[] a) {
+	return reduce(a, Stats.ARGMAX, stats).argMax;
+    } // end getArgMax
+
+    /**
+     * Reduce thread id's part of the array into its slots, and let
+     * thread 0 combine the slots when all threads are done.
+     * @param id: The thread id.
+     */
+    public void runPart(int id) {
+	int n = a.length;
+	int len = n/nThreads;
+	int startInd = id*len;
+	int stopInd = (id == nThreads - 1) ? n : startInd + len;
+	boolean doMin = (which & Stats.MIN) != 0;
+	boolean doMax = (which & (Stats.MAX | Stats.ARGMAX)) != 0;
+	boolean doSum = (which & Stats.SUM) != 0;
+
+	// Find the local statistics. A part may be empty when n < nThreads.
+	int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE, maxInd = -1;
+	long sum = 0;
+	if (startInd < stopInd) {
+	    min = max = a[startInd];
+	    maxInd = startInd;
+	    sum = a[startInd];
+	}
+	for (int i = startInd + 1; i < stopInd; i++) {
+	    int v = a[i];
+	    if (doMin && v < min) {
+		min = v;
+	    }
+	    if (doMax && v > max) {
+		max = v;
+		maxInd = i;  // Strict '>' keeps the lowest index.
+	    }
+	    if (doSum) {
+		sum += v;
+	    }
+	}
+	localMinArray[id] = min;
+	localMaxArray[id] = max;
+	localArgMaxArray[id] = maxInd;
+	localSumArray[id] = sum;
+	WorkerPool.waitByBarrier(barrier);
+
+	// Combine the slots in thread order, so that ties in the max
+	// are resolved to the lowest index.
+	if (id == 0) {
+	    maxInd = -1;
+	    for (int i = 0; i < nThreads; i++) {
+		if (localMinArray[i] < min) {
+		    min = localMinArray[i];
+		}
+		if (localArgMaxArray[i] >= 0
+		    && (maxInd < 0 || localMaxArray[i] > max)) {
+		    max = localMaxArray[i];
+		    maxInd = localArgMaxArray[i];
+		}
+		if (i > 0) {
+		    sum += localSumArray[i];
+		}
+	    }
+	    result.which = which;
+	    result.min = min;
+	    result.max = max;
+	    result.argMax = maxInd;
+	    result.sum = sum;
+	    result.count = n;
+	}
+    } // end runPart
+
+    /**
+     * Stop the worker threads.
+     */
+    public void close() {
+	pool.close();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Multi-statistic reduction";
+    }
+} // end class StatsAlgo
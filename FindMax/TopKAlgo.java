@@ -0,0 +1,212 @@
+import java.util.concurrent.*;
+
+/**
+ * Finds the k largest elements of an array. The array is split
+ * between the threads as in Algo2, and each thread keeps the k
+ * largest elements of its part in a bounded min-heap stored in an
+ * int array. Most elements are rejected by one compare with the root.
+ * After the barrier, thread 0 merges the other heaps into its own
+ * and sorts the result.
+ */
+class TopKAlgo implements FindMax {
+    int nThreads;
+    CyclicBarrier barrier;
+    int[][] localHeaps;   // One heap per thread.
+    int[] localSizes;     // Nr of elements in each heap.
+    int[] result;
+
+    TopKAlgo() {
+	this(Algo2.defaultThreads());
+    }
+
+    /**
+     * @param nThreads: Nr of threads to split the array between.
+     */
+    TopKAlgo(int nThreads) {
+	this.nThreads = nThreads;
+	System.out.println("TopKAlgo: nThreads = " + nThreads);
+	barrier = new CyclicBarrier(nThreads);
+	localHeaps = new int[nThreads][0];
+	localSizes = new int[nThreads];
+    }
+
+    /**
+     * Find the k largest elements in an array.
+     * @param a: The array.
+     * @param k: Nr of elements to find.
+     * @return: The min(k, n) largest elements in descending order.
+     */
+    int[] getTopK(int[] a, int k) {
+	if (k < 1) {
+	    throw new IllegalArgumentException("k must be >= 1");
+	}
+	if (localHeaps[0].length != k) {
+	    for (int i = 0; i < nThreads; i++) {
+		localHeaps[i] = new int[k];
+	    }
+	}
+
+	// Delimit each thread's part of the array.
+	int startInd = 0, stopInd;
+	int n = a.length;
+	int len = n/nThreads;
+	Thread[] myThreads = new Thread[nThreads];
+	Thread t;
+	int i;
+	for (i = 0; i < nThreads - 1; i++) {
+	    stopInd = startInd + len;
+	    t = new Thread(new Para(i, a, k, startInd, stopInd));
+	    t.start();
+	    myThreads[i] = t;
+	    startInd = stopInd;
+	}
+
+	// Start the last thread.
+	t = new Thread(new Para(i, a, k, startInd, n));
+	t.start();
+	myThreads[i] = t;
+
+	// Wait for threads to finish.
+	for (i = 0; i < nThreads; i++) {
+	    try {
+		myThreads[i].join();
+	    } catch (InterruptedException e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+	return result;
+    } // end getTopK
+
+    /**
+     * Find the maximum element in an array.
+     * @param a: The array.
+     * @return: Max
+     */
+    public int getMax(int[] a) {
+	return getTopK(a, 1)[0];
+    } // end getMax
+
+    /**
+     * Add a value to a bounded min-heap. When the heap is full, the
+     * value replaces the root if it is larger.
+     * @param heap: The heap. Its length is the bound.
+     * @param size: Nr of elements in the heap.
+     * @param v: The value.
+     * @return: The new nr of elements in the heap.
+     */
+    static int offer(int[] heap, int size, int v) {
+	if (size < heap.length) {
+	    // Sift up.
+	    int i = size;
+	    while (i > 0) {
+		int parent = (i - 1) >> 1;
+		if (heap[parent] <= v) {
+		    break;
+		}
+		heap[i] = heap[parent];
+		i = parent;
+	    }
+	    heap[i] = v;
+	    return size + 1;
+	}
+	if (v > heap[0]) {
+	    siftDown(heap, size, v);
+	}
+	return size;
+    } // end offer
+
+    /**
+     * Replace the root of a min-heap with a value and restore the
+     * heap order.
+     * @param heap: The heap.
+     * @param size: Nr of elements in the heap.
+     * @param v: The new value.
+     */
+    static void siftDown(int[] heap, int size, int v) {
+	int i = 0;
+	int half = size >> 1;
+	while (i < half) {
+	    int child = 2*i + 1;
+	    if (child + 1 < size && heap[child + 1] < heap[child]) {
+		child++;
+	    }
+	    if (v <= heap[child]) {
+		break;
+	    }
+	    heap[i] = heap[child];
+	    i = child;
+	}
+	heap[i] = v;
+    } // end siftDown
+
+    /* Thread class */
+    class Para implements Runnable {
+	int id, k, startInd, stopInd;
+	int[] a;
+
+	Para(int id, int[] a, int k, int start, int stop) {
+	    this.id = id;
+	    this.a = a;
+	    this.k = k;
+	    startInd = start; stopInd = stop;
+	}
+
+	public void run() {
+	    // Find the local top k.
+	    int[] heap = localHeaps[id];
+	    int size = 0;
+	    for (int i = startInd; i < stopInd; i++) {
+		if (size < k || a[i] > heap[0]) {
+		    size = offer(heap, size, a[i]);
+		}
+	    }
+	    localSizes[id] = size;
+	    waitByBarrier(barrier);
+
+	    // Merge the heaps, and pop the result in descending order.
+	    if (id == 0) {
+		for (int j = 1; j < nThreads; j++) {
+		    int[] other = localHeaps[j];
+		    for (int i = 0; i < localSizes[j]; i++) {
+			size = offer(heap, size, other[i]);
+		    }
+		}
+		int[] res = new int[size];
+		for (int i = size - 1; i >= 0; i--) {
+		    res[i] = heap[0];
+		    size--;
+		    if (size > 0) {
+			siftDown(heap, size, heap[size]);
+		    }
+		}
+		result = res;
+	    }
+	} // end run
+    } // end class Para
+
+    /**
+     * The calling thread waits by a synchronization barrier.
+     * @param b: The barrier.
+     */
+    void waitByBarrier(CyclicBarrier b) {
+	try {
+	    b.await();
+	} catch (InterruptedException e) {
+	    System.out.println("InterruptedException: " +
+			       e.getMessage());
+	    System.exit(1);
+	} catch (BrokenBarrierException e) {
+	    System.out.println("BrokenBarrierException: " +
+			       e.getMessage());
+	    System.exit(1);
+	}
+    } // end waitByBarrier
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Parallel top-k";
+    }
+} // end class TopKAlgo
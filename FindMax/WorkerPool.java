@@ -0,0 +1,115 @@
+import java.util.concurrent.*;
+
+/**
+ * An interface for the work of one call on a WorkerPool, split into
+ * one part per thread.
+ */
+interface PartTask {
+    /**
+     * Do thread id's part of the call.
+     * @param id: The thread id, 0 <= id < nThreads.
+     */
+    public void runPart(int id);
+}
+
+/**
+ * A group of persistent worker threads. The workers are started once
+ * and parked by a barrier between calls, so that a call only costs
+ * the barrier rounds instead of starting and joining nThreads
+ * threads. The calling thread of run acts as thread 0.
+ * run does not wait for the workers after part 0 is done. The task
+ * must combine the parts itself, e.g. by a barrier or a TreeCombiner,
+ * so that part 0 does not return before all parts are done.
+ * The pool must be released with close().
+ */
+class WorkerPool implements AutoCloseable {
+    int nThreads;
+    CyclicBarrier startBarrier; // Releases the parked workers.
+    Thread[] workers;
+    PartTask task;              // The task of the current call.
+    volatile boolean closed;
+
+    /**
+     * @param nThreads: Nr of threads, including the calling thread.
+     */
+    WorkerPool(int nThreads) {
+	this.nThreads = nThreads;
+	startBarrier = new CyclicBarrier(nThreads);
+	workers = new Thread[nThreads];
+	for (int i = 1; i < nThreads; i++) {
+	    workers[i] = new Thread(new Worker(i));
+	    workers[i].setDaemon(true);
+	    workers[i].start();
+	}
+    }
+
+    /**
+     * Run all parts of a task, part 0 by the calling thread.
+     * @param task: The task.
+     */
+    void run(PartTask task) {
+	if (closed) {
+	    throw new IllegalStateException("WorkerPool is closed");
+	}
+	this.task = task;
+	waitByBarrier(startBarrier); // Wake up the workers.
+	task.runPart(0);
+    } // end run
+
+    /**
+     * Stop the worker threads.
+     */
+    public void close() {
+	if (closed) {
+	    return;
+	}
+	closed = true;
+	waitByBarrier(startBarrier); // Let the workers see 'closed'.
+	for (int i = 1; i < nThreads; i++) {
+	    try {
+		workers[i].join();
+	    } catch (InterruptedException e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+	task = null;
+    } // end close
+
+    /**
+     * The calling thread waits by a synchronization barrier.
+     * @param b: The barrier.
+     */
+    static void waitByBarrier(CyclicBarrier b) {
+	try {
+	    b.await();
+	} catch (InterruptedException e) {
+	    System.out.println("InterruptedException: " +
+			       e.getMessage());
+	    System.exit(1);
+	} catch (BrokenBarrierException e) {
+	    System.out.println("BrokenBarrierException: " +
+			       e.getMessage());
+	    System.exit(1);
+	}
+    } // end waitByBarrier
+
+    /* Thread class */
+    class Worker implements Runnable {
+	int id;
+
+	Worker(int id) {
+	    this.id = id;
+	}
+
+	public void run() {
+	    while (true) {
+		waitByBarrier(startBarrier); // Park until the next call.
+		if (closed) {
+		    return;
+		}
+		task.runPart(id);
+	    }
+	} // end run
+    } // end class Worker
+} // end class WorkerPool
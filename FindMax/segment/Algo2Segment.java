@@ -0,0 +1,117 @@
+import java.lang.foreign.*;
+
+/**
+ * The find max algorithm of Algo2 for an off-heap segment of ints.
+ * Each thread reads its slice of the segment with ValueLayout.JAVA_INT,
+ * so nothing is copied to the heap, and the local maxima are combined
+ * as in Algo2. The array versions of Algo2 are inherited, and in
+ * persistent mode both kinds of call share the worker pool.
+ */
+class Algo2Segment extends Algo2 implements FindMaxSegment {
+    MemorySegment segment; // The input of the current call.
+    SegmentTask segmentTask = new SegmentTask();
+
+    Algo2Segment() {
+	this(false);
+    }
+
+    /**
+     * @param persistent: If true, keep a group of worker threads alive
+     * across calls to getMax.
+     */
+    Algo2Segment(boolean persistent) {
+	super(defaultThreads(), persistent, false);
+    }
+
+    /**
+     * Find the maximum element in an off-heap segment of ints. In
+     * persistent mode the call allocates nothing.
+     * NB: The segment must be accessible from all threads, e.g.
+     * allocated by a shared or global arena.
+     * @param s: The segment. Its size must be a multiple of 4 bytes.
+     * @return: Max
+     */
+    public int getMax(MemorySegment s) {
+	if (s.byteSize()/4 == 0) {
+	    throw new IllegalArgumentException("Empty segment");
+	}
+	argMaxMode = false;
+	globalMax = -1; // Reset max from last call.
+	segment = s;
+	if (persistent) {
+	    if (pool.closed) {
+		throw new IllegalStateException("Algo2 is closed");
+	    }
+	    pool.run(segmentTask);
+	} else {
+	    Thread[] myThreads = new Thread[nThreads];
+	    for (int i = 0; i < nThreads; i++) {
+		myThreads[i] = new Thread(new SegmentPara(i));
+		myThreads[i].start();
+	    }
+
+	    // Wait for threads to finish.
+	    for (int i = 0; i < nThreads; i++) {
+		try {
+		    myThreads[i].join();
+		} catch (InterruptedException e) {
+		    System.out.println(e.toString());
+		    System.exit(1);
+		}
+	    }
+	}
+	segment = null;
+	return globalMax;
+    } // end getMax
+
+    /**
+     * Find the max of thread id's slice of the segment, and combine
+     * the local maxima.
+     * @param id: The thread id.
+     */
+    void findLocalMaxSegment(int id) {
+	MemorySegment s = segment;
+	long n = s.byteSize()/4;
+	long len = n/nThreads;
+	long startInd = id*len;
+	long stopInd = (id == nThreads - 1) ? n : startInd + len;
+
+	// A slice is empty when n < nThreads. The last slice never is,
+	// so the combined max is always an element of the segment.
+	int localMax = Integer.MIN_VALUE;
+	for (long i = startInd; i < stopInd; i++) {
+	    int v = s.getAtIndex(ValueLayout.JAVA_INT, i);
+	    if (v > localMax) {
+		localMax = v;
+	    }
+	}
+	combine(id, localMax, 0);
+    } // end findLocalMaxSegment
+
+    /* The task of the worker pool for getMax(MemorySegment). */
+    class SegmentTask implements PartTask {
+	public void runPart(int id) {
+	    findLocalMaxSegment(id);
+	}
+    } // end class SegmentTask
+
+    /* Thread class for getMax(MemorySegment). */
+    class SegmentPara implements Runnable {
+	int id;
+
+	SegmentPara(int id) {
+	    this.id = id;
+	}
+
+	public void run() {
+	    findLocalMaxSegment(id);
+	}
+    } // end class SegmentPara
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return super.toString() + ": segment";
+    }
+} // end Algo2Segment
@@ -0,0 +1,19 @@
+import java.lang.foreign.MemorySegment;
+
+/**
+ * An interface for implementations that find the largest int in an
+ * off-heap memory segment, without copying it to the heap.
+ * NB: Needs the Foreign Function & Memory API (JDK 22, or JDK 21 with
+ * --enable-preview). The implementations are kept in this directory,
+ * apart from the array versions, so that only they need the preview
+ * flag. See SegmentTester for how to compile them.
+ */
+interface FindMaxSegment {
+    /**
+     * @param s: The segment. Its size must be a positive multiple
+     * of 4 bytes.
+     * @return: Max
+     * @throws IllegalArgumentException if the segment is empty.
+     */
+    public int getMax(MemorySegment s);
+}
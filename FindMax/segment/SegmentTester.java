@@ -0,0 +1,76 @@
+import java.util.Random;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Class for verifying the find max algorithms on off-heap segments.
+ * Kept apart from AlgoTester, since the FFM API needs --enable-preview
+ * on JDK 21. The segment classes are in a directory of their own, so
+ * that javac *.java in FindMax does not need the flag. Compile FindMax
+ * first, and then, in this directory:
+ *   javac --release 21 --enable-preview -cp .. *.java
+ *   java --enable-preview --add-modules jdk.incubator.vector -cp .:.. SegmentTester
+ */
+class SegmentTester {
+
+    public static void main(String[] args) {
+	new SegmentTester().verifySegment();
+    }  // end main
+
+    /**
+     * Verify getMax on an off-heap segment for the sequential algorithm
+     * and algo 2, with and without persistent threads, and check that
+     * both reject an empty segment.
+     */
+    void verifySegment() {
+	System.out.println("--- Verifying off-heap segments ---");
+	Random random = new Random();
+	SeqAlgo seqArray = new SeqAlgo();
+	SeqSegmentAlgo seq = new SeqSegmentAlgo();
+	Algo2Segment par = new Algo2Segment();
+	Algo2Segment persistent = new Algo2Segment(true);
+	int[] sizes = {1, 3, 1000, 1 << 20};
+	boolean ok = true;
+
+	try (Arena arena = Arena.ofShared()) {
+	    for (int n : sizes) {
+		MemorySegment s = arena.allocate(4L*n, 4);
+		int[] a = new int[n];
+		for (int i = 0; i < n; i++) {
+		    a[i] = random.nextInt() | Integer.MIN_VALUE; // Negative.
+		    s.setAtIndex(ValueLayout.JAVA_INT, i, a[i]);
+		}
+		int expected = seqArray.getMax(a);
+		ok &= seq.getMax(s) == expected
+		    && par.getMax(s) == expected
+		    && persistent.getMax(s) == expected
+		    && persistent.getMax(a) == expected;
+	    }
+	}
+	ok &= rejectsEmpty(seq) && rejectsEmpty(par) && rejectsEmpty(persistent);
+	persistent.close();
+
+	if (ok) {
+	    System.out.println("Success\n");
+	} else {
+	    System.out.println("Fail\n");
+	    System.exit(1);
+	}
+    } // end verifySegment
+
+    /**
+     * Check that an algorithm throws IllegalArgumentException on an
+     * empty segment.
+     * @param algo: The algorithm.
+     * @return: True if it does.
+     */
+    boolean rejectsEmpty(FindMaxSegment algo) {
+	try {
+	    algo.getMax(MemorySegment.ofArray(new int[0]));
+	} catch (IllegalArgumentException e) {
+	    return true;
+	}
+	return false;
+    } // end rejectsEmpty
+} // end SegmentTester
@@ -0,0 +1,36 @@
+import java.lang.foreign.*;
+
+/**
+ * The sequential find max algorithm of SeqAlgo for an off-heap
+ * segment of ints.
+ */
+class SeqSegmentAlgo implements FindMaxSegment {
+
+    /**
+     * Find the maximum element in an off-heap segment of ints.
+     * @param s: The segment. Its size must be a multiple of 4 bytes.
+     * @return: Max
+     */
+    public int getMax(MemorySegment s) {
+	long n = s.byteSize()/4;
+	if (n == 0) {
+	    throw new IllegalArgumentException("Empty segment");
+	}
+	int maximum = s.getAtIndex(ValueLayout.JAVA_INT, 0);
+
+	for (long i = 1; i < n; i++) {
+	    int v = s.getAtIndex(ValueLayout.JAVA_INT, i);
+	    if (v > maximum) {
+		maximum = v;
+	    }
+	}
+	return maximum;
+    } // end getMax
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "Sequential \"Find max\" algorithm: segment";
+    }
+} // end SeqSegmentAlgo
@@ -2,10 +2,18 @@ import java.util.Random;
 import java.util.Arrays;
 import java.lang.Runtime;
 import java.lang.Math;
+import java.lang.management.ManagementFactory;
 
 /**
  * An interface for the classes implementing the matrix multiplication 
- * algorithm.
+ * algorithm. mult takes an n x l matrix a and an l x m matrix b, and
+ * returns the n x m product.
+ * NB: The implementations are not thread safe. The parallel ones keep
+ * their scheduler and tile objects between calls, so an instance must
+ * not be used by two threads at once; give each thread its own. The
+ * ones on a TileScheduler claim it before they touch that state, so
+ * a second call while one is in progress throws
+ * IllegalStateException instead of corrupting the first.
  */
 interface MatrixMultiplicator {
     public double[][] mult(double[][] a, double[][] b);
@@ -15,6 +23,8 @@ interface MatrixMultiplicator {
 /**
  * A class for running empirical analysis on implementations of the 
  * matrix multiplication algorithm.
+ * NB: PackedSimdMult uses the Vector API, so compile and run with
+ * --add-modules jdk.incubator.vector.
  */ 
 class AlgoTester {
     // Find median running time of NTESTS tests for each input size.
@@ -26,9 +36,36 @@ class AlgoTester {
 
 	// Verify the implementations.
 	tester.verifyPrograms();
+	tester.verifyTranspose();
+	tester.verifyGemm();
+	tester.verifyBatched();
 
 	// Get empirical running times.
 	tester.analyzePrograms();
+
+	// Compare the double[][] and the flat matrix layout.
+	//tester.analyzeLayouts();
+
+	// Tune the blocked algorithm, and report GFLOP/s.
+	//tester.analyzeBlocked();
+
+	// Compare Strassen's algorithm with the sequential algorithm.
+	//tester.analyzeStrassen();
+
+	// Compare the packed parallel transpose with the in-place one.
+	//tester.analyzeTranspose();
+
+	// Print the load of each worker of the tile scheduler.
+	//tester.analyzeLoadBalance();
+
+	// Measure the time and allocation per gemm call.
+	//tester.analyzeGemm();
+
+	// Compare the algorithms on tall and wide rectangular products.
+	//tester.analyzeShapes();
+
+	// Compare batched small products with one mult call per product.
+	//tester.analyzeBatched();
     } // end main
 
     /**
@@ -39,7 +76,13 @@ class AlgoTester {
 	    new SequentialMult(),
 	    new ParallelMult(),
 	    new ParallelMultTransposed(),
-	    new ParallelMultTransposed2()
+	    new ParallelMultTransposed2(),
+	    new FlatAdapter(new FlatSequentialMult()),
+	    new FlatAdapter(new FlatParallelMult()),
+	    new FlatAdapter(new FlatParallelMultTransposed()),
+	    new BlockedMult(),
+	    new PackedSimdMult(),
+	    new StrassenMult()
 	};
 	MatrixMultiplicator m;
 	
@@ -47,10 +90,174 @@ class AlgoTester {
 	    m = algos[i];
 	    verifyMult(m);
 	    verifyMult2(m);
+	    verifyRectangular(m);
 	    System.out.println();
 	}
+	closeAll(algos);
     } // end verifyPrograms
 
+    /**
+     * Verify the Transposer on square and rectangular matrices, and
+     * that the transposed multipliers leave their input unchanged.
+     */
+    void verifyTranspose() {
+	System.out.println("-> Verify transposer");
+	Transposer transposer = new Transposer();
+	int[][] shapes = {{1, 1}, {3, 3}, {5, 70}, {100, 33}, {257, 129}};
+	for (int[] shape : shapes) {
+	    double[][] b = new double[shape[0]][shape[1]];
+	    fillMatrix(b);
+	    Matrix bt = transposer.transpose(b);
+	    Matrix bt2 = transposer.transpose(Matrix.fromArray(b));
+	    for (int i = 0; i < shape[0]; i++) {
+		for (int j = 0; j < shape[1]; j++) {
+		    if (bt.get(j, i) != b[i][j] || bt2.get(j, i) != b[i][j]) {
+			System.out.println("Error! transpose of " + shape[0] +
+					   "x" + shape[1] + " at (" + i +
+					   ", " + j + ")");
+			System.exit(1);
+		    }
+		}
+	    }
+	}
+
+	MatrixMultiplicator[] algos = {
+	    new ParallelMultTransposed(),
+	    new ParallelMultTransposed2()
+	};
+	for (MatrixMultiplicator m : algos) {
+	    double[][] a = new double[50][50];
+	    double[][] b = new double[50][50];
+	    fillMatrix(a);
+	    fillMatrix(b);
+	    double[][] bCopy = new double[50][];
+	    for (int i = 0; i < 50; i++) {
+		bCopy[i] = b[i].clone();
+	    }
+	    m.mult(a, b);
+	    if (!Arrays.deepEquals(b, bCopy)) {
+		System.out.println("Error! " + m.toString() + " changed its input.");
+		System.exit(1);
+	    }
+	}
+	closeAll(algos);
+	transposer.close();
+	System.out.println("Correct result.\n");
+    } // end verifyTranspose
+
+    /**
+     * Verify the implementations of the Gemm interface for all four
+     * combinations of transpose flags, on rectangular matrices.
+     * With beta = 0, c is filled with NaN, which must not be read.
+     */
+    void verifyGemm() {
+	Gemm[] algos = {
+	    new ParallelMult(),
+	    new ParallelMultTransposed(),
+	    new BlockedMult()
+	};
+	int n = 37, l = 300, m = 41;
+	double alpha = 1.5;
+	double[] betas = {0.0, 1.0, -0.5};
+	Random rand = new Random(1234);
+
+	for (Gemm g : algos) {
+	    System.out.println("-> Verify gemm of " + g.toString());
+	    for (int f = 0; f < 4; f++) {
+		boolean transA = (f & 1) != 0, transB = (f & 2) != 0;
+		double[][] a = transA ? new double[l][n] : new double[n][l];
+		double[][] b = transB ? new double[m][l] : new double[l][m];
+		fillMatrix(a);
+		fillMatrix(b);
+		for (double beta : betas) {
+		    double[][] c = new double[n][m];
+		    double[][] d = new double[n][m];
+		    for (int i = 0; i < n; i++) {
+			for (int j = 0; j < m; j++) {
+			    c[i][j] = (beta == 0.0) ? Double.NaN : rand.nextDouble();
+			    double tmp = 0.0;
+			    for (int k = 0; k < l; k++) {
+				tmp += (transA ? a[k][i] : a[i][k])*
+				    (transB ? b[j][k] : b[k][j]);
+			    }
+			    d[i][j] = (beta == 0.0) ? alpha*tmp
+				: alpha*tmp + beta*c[i][j];
+			}
+		    }
+		    g.gemm(transA, transB, alpha, a, b, beta, c);
+		    double err = maxAbsError(c, d);
+		    if (!(err < 1e-10)) {
+			System.out.println("Error! " + g.toString() + ": transA = " +
+					   transA + ", transB = " + transB +
+					   ", beta = " + beta + ", error = " + err);
+			System.exit(1);
+		    }
+		}
+	    }
+	    System.out.println("Correct result.");
+	}
+	closeAll(algos);
+	System.out.println();
+    } // end verifyGemm
+
+    /**
+     * Verify BatchedMult with and without its kernels, on the sizes
+     * that have a kernel, on sizes next to them, and on a rectangular
+     * batch, against the plain triple loop.
+     */
+    void verifyBatched() {
+	BatchedMult batched = new BatchedMult();
+	// Shapes n x l times l x m.
+	int[][] shapes = {{1, 1, 1}, {3, 3, 3}, {4, 4, 4}, {5, 5, 5}, {8, 8, 8},
+			  {16, 16, 16}, {17, 17, 17}, {32, 32, 32}, {64, 64, 64},
+			  {3, 7, 5}};
+	int[] counts = {1, 37, 3000};
+	Random rand = new Random(1234);
+
+	for (int f = 0; f < 2; f++) {
+	    batched.useKernels = (f == 0);
+	    System.out.println("-> Verify algorithm " + batched.toString());
+	    for (int[] shape : shapes) {
+		int n = shape[0], l = shape[1], m = shape[2];
+		for (int count : counts) {
+		    double[] a = new double[count*n*l];
+		    double[] b = new double[count*l*m];
+		    double[] c = new double[count*n*m];
+		    for (int i = 0; i < a.length; i++) {
+			a[i] = rand.nextDouble();
+		    }
+		    for (int i = 0; i < b.length; i++) {
+			b[i] = rand.nextDouble();
+		    }
+		    // c must be overwritten, not added to.
+		    Arrays.fill(c, Double.NaN);
+		    batched.mult(count, n, l, m, a, b, c);
+		    double err = 0.0;
+		    for (int p = 0; p < count; p++) {
+			for (int i = 0; i < n; i++) {
+			    for (int j = 0; j < m; j++) {
+				double tmp = 0.0;
+				for (int k = 0; k < l; k++) {
+				    tmp += a[p*n*l + i*l + k]*b[p*l*m + k*m + j];
+				}
+				err = Math.max(err, Math.abs(tmp - c[p*n*m + i*m + j]));
+			    }
+			}
+		    }
+		    if (!(err < 1e-10)) {
+			System.out.println("Error! " + batched.toString() + ": " + count +
+					   " products of " + n + "x" + l + " and " +
+					   l + "x" + m + ", error = " + err);
+			System.exit(1);
+		    }
+		}
+	    }
+	    System.out.println("Correct result.");
+	}
+	batched.close();
+	System.out.println();
+    } // end verifyBatched
+
     /**
      * Verify an implementation of the MatrixMultiplicator interface.
      * Multiply two matrices of only 1s, and verify the result.
@@ -152,6 +359,48 @@ class AlgoTester {
 	System.out.println("Correct result.");
     } // end verifyMult2
 
+    /**
+     * Verify an implementation of the MatrixMultiplicator interface on
+     * tall, wide and thin rectangular matrices, against the plain
+     * triple loop.
+     */
+    void verifyRectangular(MatrixMultiplicator m) {
+	System.out.println("-> Verify algorithm " + m.toString() + " on rectangles");
+	// Shapes n x l times l x m.
+	int[][] shapes = {{300, 7, 5}, {5, 7, 300}, {1, 40, 1}, {2, 1, 3},
+			  {129, 65, 33}, {33, 65, 129}};
+	for (int[] shape : shapes) {
+	    int n = shape[0], l = shape[1], mm = shape[2];
+	    double[][] a = new double[n][l];
+	    double[][] b = new double[l][mm];
+	    fillMatrix(a);
+	    fillMatrix(b);
+	    double[][] d = new double[n][mm];
+	    for (int i = 0; i < n; i++) {
+		for (int j = 0; j < mm; j++) {
+		    double tmp = 0.0;
+		    for (int k = 0; k < l; k++) {
+			tmp += a[i][k]*b[k][j];
+		    }
+		    d[i][j] = tmp;
+		}
+	    }
+	    double[][] c = m.mult(a, b);
+	    if (c == null || c.length != n || c[0].length != mm) {
+		System.out.println("Error! " + m.toString() + ": wrong result size for " +
+				   n + "x" + l + " times " + l + "x" + mm);
+		System.exit(1);
+	    }
+	    double err = maxAbsError(c, d);
+	    if (!(err < 1e-9)) {
+		System.out.println("Error! " + m.toString() + ": " + n + "x" + l +
+				   " times " + l + "x" + mm + ", error = " + err);
+		System.exit(1);
+	    }
+	}
+	System.out.println("Correct result.");
+    } // end verifyRectangular
+
     /**
      * Analyze the two parallel programs for matrix multiplication.
      */
@@ -197,8 +446,461 @@ class AlgoTester {
 	    tPar = testAlgo(tmp, sizes);
 	    printSpeedup(tSeq, tPar, sizes, tmp.toString());
 	}
+	closeAll(parAlgos);
     } // end analyzePrograms
 
+    /**
+     * Compare each algorithm on double[][] with its version on the
+     * flat layout. The speedup printed is the time on double[][]
+     * divided by the time on the flat layout.
+     */
+    void analyzeLayouts() {
+	MatrixMultiplicator[] algos = {
+	    new SequentialMult(),
+	    new ParallelMult(),
+	    new ParallelMultTransposed()
+	};
+	FlatMatrixMultiplicator[] flatAlgos = {
+	    new FlatSequentialMult(),
+	    new FlatParallelMult(),
+	    new FlatParallelMultTransposed()
+	};
+	int[] sizes = makeSizes(10, 100, 1500);
+
+	for (int i = 0; i < algos.length; i++) {
+	    double[] t = testAlgo(algos[i], sizes);
+	    double[] tFlat = testFlatAlgo(flatAlgos[i], sizes);
+	    printSpeedup(t, tFlat, sizes, flatAlgos[i].toString());
+	}
+	closeAll(algos);
+	closeAll(flatAlgos);
+    } // end analyzeLayouts
+
+    /**
+     * Tune the block sizes of the blocked algorithm, and compare its
+     * GFLOP/s and that of the packed SIMD algorithm with the
+     * row-partitioned parallel algorithms.
+     */
+    void analyzeBlocked() {
+	BlockedMult blocked = new BlockedMult();
+	blocked.autotune();
+	MatrixMultiplicator[] algos = {
+	    new ParallelMult(),
+	    new ParallelMultTransposed(),
+	    blocked,
+	    new PackedSimdMult()
+	};
+	int[] sizes = makeSizes(8, 500, 4500);
+
+	double[] tBase = null;
+	for (int i = 0; i < algos.length; i++) {
+	    double[] t = testAlgo(algos[i], sizes);
+	    printGflops(t, sizes, algos[i].toString());
+	    if (i == 0) {
+		tBase = t;
+	    } else {
+		printSpeedup(tBase, t, sizes, algos[i].toString() + "_vs_parMult");
+	    }
+	}
+	closeAll(algos);
+    } // end analyzeBlocked
+
+    /**
+     * Tune the cutoff of Strassen's algorithm, and print its speedup
+     * and its max abs error against the sequential algorithm.
+     */
+    void analyzeStrassen() {
+	MatrixMultiplicator seqAlgo = new SequentialMult();
+	StrassenMult strassen = new StrassenMult();
+	strassen.autotune();
+	int[] sizes = makeSizes(6, 500, 3500);
+
+	double[] tSeq = testAlgo(seqAlgo, sizes);
+	double[] tPar = testAlgo(strassen, sizes);
+	printSpeedup(tSeq, tPar, sizes, strassen.toString());
+
+	System.out.println("++ Max abs error ++");
+	System.out.format("%-11s%-10s\n", "n", "Error");
+	for (int i = 0; i < sizes.length; i++) {
+	    double[][] a = new double[sizes[i]][sizes[i]];
+	    double[][] b = new double[sizes[i]][sizes[i]];
+	    fillMatrix(a);
+	    fillMatrix(b);
+	    double err = maxAbsError(seqAlgo.mult(a, b), strassen.mult(a, b));
+	    System.out.format("%10d|%-10.3e\n", sizes[i], err);
+	}
+	strassen.close();
+	System.out.println("\n");
+    } // end analyzeStrassen
+
+    /**
+     * Compare the Transposer with the sequential in-place transpose
+     * that ParallelMultTransposed used before, and with the fixed
+     * bands of rows, one thread each, that ParallelMultTransposed2
+     * used before. The speedups printed are the time of each of them
+     * divided by the time of the Transposer.
+     */
+    void analyzeTranspose() {
+	Transposer transposer = new Transposer();
+	int nThreads = TileScheduler.defaultThreads();
+	int[] sizes = makeSizes(10, 500, 8500);
+	double[] tOld = new double[sizes.length];
+	double[] tBands = new double[sizes.length];
+	double[] tNew = new double[sizes.length];
+	double[] times = new double[NTESTS];
+	double[] times2 = new double[NTESTS];
+	double[] times3 = new double[NTESTS];
+
+	for (int i = sizes.length - 1; i >= 0; i--) {
+	    double[][] b = new double[sizes[i]][sizes[i]];
+	    fillMatrix(b);
+	    for (int t = 0; t < NTESTS; t++) {
+		long startTime = System.nanoTime();
+		transposeInPlace(b);
+		times[t] = (System.nanoTime() - startTime)/1000000.0;
+
+		startTime = System.nanoTime();
+		transposer.transpose(b);
+		times2[t] = (System.nanoTime() - startTime)/1000000.0;
+
+		startTime = System.nanoTime();
+		transposeByBands(b, nThreads);
+		times3[t] = (System.nanoTime() - startTime)/1000000.0;
+	    }
+	    tOld[i] = getMedian(times);
+	    tNew[i] = getMedian(times2);
+	    tBands[i] = getMedian(times3);
+	}
+	printSpeedup(tOld, tNew, sizes, "transposer");
+	printSpeedup(tBands, tNew, sizes, "transposer_vs_bands");
+	transposer.close();
+    } // end analyzeTranspose
+
+    /**
+     * Return the transpose of a matrix as a packed Matrix, with new
+     * threads that each write a fixed band of rows of b^T, the last
+     * one also the remainder, as ParallelMultTransposed2 did.
+     * @param b: The matrix.
+     * @param nThreads: Nr of threads.
+     */
+    Matrix transposeByBands(double[][] b, int nThreads) {
+	Matrix bt = new Matrix(b[0].length, b.length);
+	Thread[] myThreads = new Thread[nThreads];
+	int i;
+	for (i = 0; i < nThreads; i++) {
+	    myThreads[i] = new Thread(new BandPara(i, nThreads, b, bt));
+	    myThreads[i].start();
+	}
+
+	// Wait for threads to finish.
+	for (i = 0; i < nThreads; i++) {
+	    try {
+		myThreads[i].join();
+	    } catch (InterruptedException e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+	return bt;
+    } // end transposeByBands
+
+    /* Thread class for transposeByBands. */
+    class BandPara implements Runnable {
+	int id, nThreads;
+	double[][] b;
+	Matrix bt;
+
+	BandPara(int id, int nThreads, double[][] b, Matrix bt) {
+	    this.id = id;
+	    this.nThreads = nThreads;
+	    this.b = b;
+	    this.bt = bt;
+	}
+
+	public void run() {
+	    Transposer.transposeBand(id, nThreads, b, null, bt);
+	}
+    } // end inner class BandPara
+
+    /**
+     * Run the algorithms that use a TileScheduler once per size, and
+     * print the tiles and busy time of each worker.
+     */
+    void analyzeLoadBalance() {
+	ParallelMult parMult = new ParallelMult();
+	ParallelMultTransposed parMultTransposed = new ParallelMultTransposed();
+	BlockedMult blocked = new BlockedMult();
+	MatrixMultiplicator[] algos = {parMult, parMultTransposed, blocked};
+	TileScheduler[] schedulers = {
+	    parMult.scheduler,
+	    parMultTransposed.scheduler,
+	    blocked.scheduler
+	};
+	int[] sizes = {500, 1500};
+
+	for (int size : sizes) {
+	    double[][] a = new double[size][size];
+	    double[][] b = new double[size][size];
+	    fillMatrix(a);
+	    fillMatrix(b);
+	    for (int i = 0; i < algos.length; i++) {
+		algos[i].mult(a, b);
+		System.out.println("* Load of " + algos[i].toString() +
+				   ", n = " + size + " *");
+		schedulers[i].printLoad();
+		System.out.println();
+	    }
+	}
+	closeAll(algos);
+    } // end analyzeLoadBalance
+
+    /**
+     * Measure the time and the bytes allocated per call of gemm with
+     * c = a*b + c, after the first calls have allocated the buffers.
+     * The allocation is summed over the calling thread and the
+     * scheduler's workers.
+     */
+    void analyzeGemm() {
+	ParallelMult parMult = new ParallelMult();
+	ParallelMultTransposed parMultTransposed = new ParallelMultTransposed();
+	BlockedMult blocked = new BlockedMult();
+	Gemm[] algos = {parMult, parMultTransposed, blocked};
+	TileScheduler[] schedulers = {
+	    parMult.scheduler,
+	    parMultTransposed.scheduler,
+	    blocked.scheduler
+	};
+	com.sun.management.ThreadMXBean bean =
+	    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	int size = 500;
+	int reps = 10;
+	double[][] a = new double[size][size];
+	double[][] b = new double[size][size];
+	double[][] c = new double[size][size];
+	fillMatrix(a);
+	fillMatrix(b);
+
+	System.out.format("%-20s%-14s%-14s\n", "algorithm", "time (ms)", "bytes/call");
+	for (int i = 0; i < algos.length; i++) {
+	    // Warm up, and let the buffers and the workers be created.
+	    for (int r = 0; r < reps; r++) {
+		algos[i].gemm(false, false, 1.0, a, b, 1.0, c);
+	    }
+	    long bytes = -allocatedBytes(bean, schedulers[i]);
+	    long startTime = System.nanoTime();
+	    for (int r = 0; r < reps; r++) {
+		algos[i].gemm(false, false, 1.0, a, b, 1.0, c);
+	    }
+	    long stopTime = System.nanoTime();
+	    bytes += allocatedBytes(bean, schedulers[i]);
+	    System.out.format("%-20s%-14.3f%-14d\n", algos[i].toString(),
+			      (stopTime - startTime)/1000000.0/reps, bytes/reps);
+	}
+	closeAll(algos);
+    } // end analyzeGemm
+
+    /**
+     * Time the algorithms on a tall product, with few columns in c,
+     * and on a wide product, with few rows in c, and print the
+     * speedup against the sequential algorithm.
+     */
+    void analyzeShapes() {
+	MatrixMultiplicator seqAlgo = new SequentialMult();
+	MatrixMultiplicator[] algos = {
+	    new ParallelMult(),
+	    new ParallelMultTransposed(),
+	    new ParallelMultTransposed2(),
+	    new BlockedMult(),
+	    new PackedSimdMult(),
+	    new StrassenMult()
+	};
+	// Shapes n x l times l x m.
+	int[][] shapes = {{8000, 200, 16}, {16, 200, 8000}};
+	double[] times = new double[NTESTS];
+
+	System.out.format("%-24s%-20s%-14s%-10s\n", "algorithm", "shape",
+			  "time (ms)", "speedup");
+	for (int[] shape : shapes) {
+	    double[][] a = new double[shape[0]][shape[1]];
+	    double[][] b = new double[shape[1]][shape[2]];
+	    fillMatrix(a);
+	    fillMatrix(b);
+	    String name = shape[0] + "x" + shape[1] + "x" + shape[2];
+	    double tSeq = 0.0;
+	    for (int i = -1; i < algos.length; i++) {
+		MatrixMultiplicator m = (i < 0) ? seqAlgo : algos[i];
+		m.mult(a, b);  // Warm up the JIT.
+		for (int t = 0; t < NTESTS; t++) {
+		    long startTime = System.nanoTime();
+		    m.mult(a, b);
+		    times[t] = (System.nanoTime() - startTime)/1000000.0;
+		}
+		double time = getMedian(times);
+		if (i < 0) {
+		    tSeq = time;
+		}
+		System.out.format("%-24s%-20s%-14.3f%-10.2f\n", m.toString(),
+				  name, time, tSeq/time);
+	    }
+	}
+	closeAll(algos);
+    } // end analyzeShapes
+
+    /**
+     * Time a batch of small n x n products for each size with a
+     * kernel, by BatchedMult with and without its kernels, and by
+     * one call of ParallelMult.mult per product. The batches hold
+     * about the same nr of elements for all sizes.
+     */
+    void analyzeBatched() {
+	BatchedMult batched = new BatchedMult();
+	ParallelMult parMult = new ParallelMult();
+	int[] sizes = {4, 8, 16, 32, 64};
+	int elements = 1 << 20;
+	double[] times = new double[NTESTS];
+
+	System.out.format("%-22s%-8s%-10s%-14s%-10s\n", "algorithm", "n",
+			  "count", "time (ms)", "GFLOP/s");
+	for (int n : sizes) {
+	    int count = elements/(n*n);
+	    double[] a = new double[count*n*n];
+	    double[] b = new double[count*n*n];
+	    double[] c = new double[count*n*n];
+	    Random rand = new Random(1234);
+	    for (int i = 0; i < a.length; i++) {
+		a[i] = rand.nextDouble();
+		b[i] = rand.nextDouble();
+	    }
+	    double flops = 2.0*count*n*n*n;
+
+	    for (int f = 0; f < 2; f++) {
+		batched.useKernels = (f == 0);
+		// Warm up the JIT, which needs many calls for the vector kernels.
+		for (int t = 0; t < 10; t++) {
+		    batched.mult(count, n, n, n, a, b, c);
+		}
+		for (int t = 0; t < NTESTS; t++) {
+		    long startTime = System.nanoTime();
+		    batched.mult(count, n, n, n, a, b, c);
+		    times[t] = (System.nanoTime() - startTime)/1000000.0;
+		}
+		double time = getMedian(times);
+		System.out.format("%-22s%-8d%-10d%-14.3f%-10.2f\n", batched.toString(),
+				  n, count, time, flops/time/1e6);
+	    }
+
+	    // One mult call per product, on double[][] copies.
+	    double[][][] as = new double[count][n][n];
+	    double[][][] bs = new double[count][n][n];
+	    for (int p = 0; p < count; p++) {
+		for (int i = 0; i < n; i++) {
+		    System.arraycopy(a, p*n*n + i*n, as[p][i], 0, n);
+		    System.arraycopy(b, p*n*n + i*n, bs[p][i], 0, n);
+		}
+	    }
+	    for (int t = 0; t < NTESTS; t++) {
+		long startTime = System.nanoTime();
+		for (int p = 0; p < count; p++) {
+		    parMult.mult(as[p], bs[p]);
+		}
+		times[t] = (System.nanoTime() - startTime)/1000000.0;
+	    }
+	    double time = getMedian(times);
+	    System.out.format("%-22s%-8d%-10d%-14.3f%-10.2f\n", "parMult per product",
+			      n, count, time, flops/time/1e6);
+	}
+	batched.close();
+	parMult.close();
+    } // end analyzeBatched
+
+    /**
+     * Return the bytes allocated so far by the calling thread and the
+     * workers of a scheduler.
+     */
+    long allocatedBytes(com.sun.management.ThreadMXBean bean, TileScheduler s) {
+	long bytes = bean.getCurrentThreadAllocatedBytes();
+	if (s.workers != null) {
+	    for (Thread w : s.workers) {
+		bytes += bean.getThreadAllocatedBytes(w.threadId());
+	    }
+	}
+	return bytes;
+    } // end allocatedBytes
+
+    /**
+     * Transpose a square matrix in place, one row at a time.
+     */
+    void transposeInPlace(double[][] b) {
+	int n = b.length;
+	double tmp;
+	for (int i = 0; i < n; i++) {
+	    for (int j = 0; j < i; j++) {
+		tmp = b[i][j];
+		b[i][j] = b[j][i];
+		b[j][i] = tmp;
+	    }
+	}
+    } // end transposeInPlace
+
+    /**
+     * Return the largest absolute difference between two matrices of
+     * the same size.
+     */
+    double maxAbsError(double[][] c, double[][] d) {
+	double err = 0.0;
+	for (int i = 0; i < c.length; i++) {
+	    for (int j = 0; j < c[i].length; j++) {
+		err = Math.max(err, Math.abs(c[i][j] - d[i][j]));
+	    }
+	}
+	return err;
+    } // end maxAbsError
+
+    /**
+     * Print the GFLOP/s of an algorithm, counting 2n^3 floating point
+     * operations for n x n matrices. Write them to file if TOFILE is
+     * true.
+     * @param t: The times in ms.
+     * @param sizes: The tested input sizes.
+     * @param algoName: A string identifying the algorithm.
+     */
+    void printGflops(double[] t, int[] sizes, String algoName) {
+	System.out.println("++ GFLOP/s ++");
+	System.out.format("%-11s%-10s\n", "n", "GFLOP/s");
+
+	double[] gflops = new double[sizes.length];
+	for (int i = 0; i < sizes.length; i++) {
+	    double n = sizes[i];
+	    gflops[i] = 2*n*n*n/(t[i]*1e6);
+	    System.out.format("%10d|%-10.3f\n", sizes[i], gflops[i]);
+	}
+	System.out.println("\n");
+
+	if (TOFILE) {
+	    MyFileWriter w = new MyFileWriter();
+	    int nProcs = Runtime.getRuntime().availableProcessors();
+	    String folder = "../Kjoretider/MatrixMult/";
+	    w.printToFile(folder + algoName + "_gflops_" + nProcs + ".txt", gflops);
+	    w.printToFile(folder + algoName + "_n_" + nProcs + ".txt", sizes);
+	    System.out.println("Sizes and GFLOP/s are written to file.");
+	}
+    } // end printGflops
+
+    /**
+     * Return nSizes input sizes from sizeMin with equal intervals,
+     * below sizeMax.
+     */
+    int[] makeSizes(int nSizes, int sizeMin, int sizeMax) {
+	int[] sizes = new int[nSizes];
+	int interval = (sizeMax - sizeMin)/nSizes;
+	int s = sizeMin;
+	for (int i = 0; i < sizes.length; i++) {
+	    sizes[i] = s;
+	    s += interval;
+	}
+	return sizes;
+    } // end makeSizes
+
     /**
      * Get the running time for an algorithm for a number of input sizes.
      * @param m: An implementation of the MatrixMultiplicator interface.
@@ -246,6 +948,52 @@ class AlgoTester {
 	return getMedian(times);
     } // end testAlgo
 
+    /**
+     * Get the running time for an algorithm on the flat layout for a
+     * number of input sizes.
+     * @param m: An implementation of the FlatMatrixMultiplicator interface.
+     * @param sizes: The input sizes to test the algorithm with.
+     */
+    double[] testFlatAlgo(FlatMatrixMultiplicator m, int[] sizes) {
+	System.out.println("* Analyze algorithm " + m.toString() + " *");
+
+	double[] times = new double[sizes.length];
+	for (int i = sizes.length - 1; i >= 0; i--) {
+	    times[i] = testFlatAlgo(m, sizes[i]);
+	}
+	return times;
+    } // end testFlatAlgo
+
+    /**
+     * Get the running time for an algorithm on the flat layout for a
+     * specific input size. The input is filled as in the double[][]
+     * test, and the copying is not timed.
+     * @param algo: An implementation of the FlatMatrixMultiplicator interface.
+     * @param size: The input size to test the algorithm with.
+     */
+    double testFlatAlgo(FlatMatrixMultiplicator algo, int size) {
+	double[][] a, b;
+	Matrix fa, fb;
+	double[] times = new double[NTESTS];
+	long startTime, stopTime;
+
+	for (int i = 0; i < NTESTS; i++) {
+	    a = new double[size][size];
+	    b = new double[size][size];
+	    fillMatrix(a);
+	    fillMatrix(b);
+	    fa = Matrix.fromArray(a);
+	    fb = Matrix.fromArray(b);
+
+	    // Measure the running time in ms.
+	    startTime = System.nanoTime();
+	    algo.mult(fa, fb);
+	    stopTime = System.nanoTime();
+	    times[i] = (stopTime - startTime)/1000000.0;
+	}
+	return getMedian(times);
+    } // end testFlatAlgo
+
     /**
      * Calculate and print speedup. Write speedup to file if TOFILE is true.
      * @param tSeq: The times for a sequential algorithm.
@@ -285,6 +1033,23 @@ class AlgoTester {
 	}
     } // end printSpeedup.
 
+    /**
+     * Close the algorithms that own worker threads, and skip the rest.
+     * @param algos: The algorithms.
+     */
+    void closeAll(Object[] algos) {
+	for (Object algo : algos) {
+	    if (algo instanceof AutoCloseable) {
+		try {
+		    ((AutoCloseable) algo).close();
+		} catch (Exception e) {
+		    System.out.println(e.toString());
+		    System.exit(1);
+		}
+	    }
+	}
+    } // end closeAll
+
     /**
      * Return the median value of an array.
      */
@@ -314,7 +1079,7 @@ class AlgoTester {
 	int n = m.length;
 
 	for (int i = 0; i < n; i++) {
-	    for (int j = 0; j < n; j++) {
+	    for (int j = 0; j < m[i].length; j++) {
 		m[i][j] = rand.nextDouble();
 	    }
 	}
@@ -0,0 +1,332 @@
+import jdk.incubator.vector.*;
+
+/**
+ * Multiplies batches of small independent matrices. The count
+ * matrices of a batch are stored one after the other in one array,
+ * each row by row, so matrix p of an n x l batch a starts at
+ * a[p*n*l]. The threads of a TileScheduler claim tiles of whole
+ * products, so the batch is split instead of each product, and a
+ * small product is never shared by threads.
+ * The square sizes 4, 8, 16, 32 and 64 have kernels of their own:
+ * the 4 x 4 kernel is written out in full, the 8 x 8 kernels keep
+ * a row or two rows of c in two vectors and are written out along
+ * k, and the larger sizes share a vector kernel that runs a whole
+ * tile of the batch. Other sizes use a general kernel. All vector
+ * code uses the preferred species, since mixing vector shapes makes
+ * the JIT's type profiles polymorphic and slows down every kernel.
+ * A batch with little work is run by the calling thread. mult
+ * reuses one tile kernel, so a call into a given c allocates
+ * nothing.
+ * NB: Compile and run with --add-modules jdk.incubator.vector.
+ */
+class BatchedMult implements AutoCloseable {
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    static final int L = SPECIES.length();
+    // Batches with fewer multiply-adds are run by the calling thread.
+    static final long SEQ_WORK = 1 << 15;
+    int numThreads;
+    TileScheduler scheduler;
+    BatchTile batchTile = new BatchTile();
+    boolean useKernels = true;  // false to use only the general kernel.
+
+    BatchedMult() {
+	numThreads = Runtime.getRuntime().availableProcessors();
+	if (numThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    numThreads = 32;
+	}
+	System.out.println("Algo 2: nThreads = " + numThreads);
+	scheduler = new TileScheduler(numThreads);
+    }
+
+    /**
+     * Calculate the products of a batch of n x n matrices.
+     * @param count: Nr of products.
+     * @param n: Size of the matrices.
+     * @param a: The 1st matrices, n*n doubles each.
+     * @param b: The 2nd matrices, n*n doubles each.
+     * @return: The count results, n*n doubles each.
+     */
+    double[] mult(int count, int n, double[] a, double[] b) {
+	double[] c = new double[count*n*n];
+	mult(count, n, n, n, a, b, c);
+	return c;
+    } // end mult
+
+    /**
+     * Calculate c[p] = a[p]*b[p] for p = 0, ..., count - 1.
+     * @param count: Nr of products.
+     * @param n: Nr of rows of each a[p] and c[p].
+     * @param l: Nr of columns of each a[p], and of rows of each b[p].
+     * @param m: Nr of columns of each b[p] and c[p].
+     * @param a: The n x l matrices.
+     * @param b: The l x m matrices.
+     * @param c: The n x m results. Its old contents are not read.
+     */
+    void mult(int count, int n, int l, int m, double[] a, double[] b, double[] c) {
+	if (count < 0 || n < 0 || l < 0 || m < 0) {
+	    throw new IllegalArgumentException("negative batch size");
+	}
+	if (a.length < (long) count*n*l || b.length < (long) count*l*m ||
+	    c.length < (long) count*n*m) {
+	    throw new IllegalArgumentException("batch arrays too short for " + count +
+					       " products of " + n + "x" + l +
+					       " and " + l + "x" + m);
+	}
+	BatchTile t = batchTile;
+	scheduler.acquire();
+	try {
+	    t.n = n;
+	    t.l = l;
+	    t.m = m;
+	    t.count = count;
+	    t.a = a;
+	    t.b = b;
+	    t.c = c;
+	    t.kernel = useKernels ? kernelFor(n, l, m) : 0;
+	    if ((long) count*n*l*m < SEQ_WORK) {
+		t.size = Math.max(count, 1);
+		t.compute(0, 0);
+	    } else {
+		t.size = scheduler.rowsPerTile(count);
+		scheduler.run((count + t.size - 1)/t.size, t);
+	    }
+	} finally {
+	    t.a = t.b = t.c = null;
+	    scheduler.release();
+	}
+    } // end mult
+
+    /**
+     * Return the size of the kernel for n x l times l x m matrices,
+     * or 0 for the general kernel.
+     */
+    static int kernelFor(int n, int l, int m) {
+	if (n != l || n != m) {
+	    return 0;
+	}
+	switch (n) {
+	case 4:
+	case 16:
+	case 32:
+	case 64:
+	    return n;
+	case 8:
+	    return (L == 4 || L == 8) ? 8 : 0;
+	default:
+	    return 0;
+	}
+    } // end kernelFor
+
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return useKernels ? "batchedMult" : "batchedMultGeneral";
+    }
+
+    /**
+     * Calculate c = a*b for 4 x 4 matrices at offsets ao, bo and co.
+     */
+    static void mult4(double[] a, int ao, double[] b, int bo, double[] c, int co) {
+	double b00 = b[bo],      b01 = b[bo + 1],  b02 = b[bo + 2],  b03 = b[bo + 3];
+	double b10 = b[bo + 4],  b11 = b[bo + 5],  b12 = b[bo + 6],  b13 = b[bo + 7];
+	double b20 = b[bo + 8],  b21 = b[bo + 9],  b22 = b[bo + 10], b23 = b[bo + 11];
+	double b30 = b[bo + 12], b31 = b[bo + 13], b32 = b[bo + 14], b33 = b[bo + 15];
+	double a0, a1, a2, a3;
+
+	a0 = a[ao];      a1 = a[ao + 1];  a2 = a[ao + 2];  a3 = a[ao + 3];
+	c[co]      = a0*b00 + a1*b10 + a2*b20 + a3*b30;
+	c[co + 1]  = a0*b01 + a1*b11 + a2*b21 + a3*b31;
+	c[co + 2]  = a0*b02 + a1*b12 + a2*b22 + a3*b32;
+	c[co + 3]  = a0*b03 + a1*b13 + a2*b23 + a3*b33;
+	a0 = a[ao + 4];  a1 = a[ao + 5];  a2 = a[ao + 6];  a3 = a[ao + 7];
+	c[co + 4]  = a0*b00 + a1*b10 + a2*b20 + a3*b30;
+	c[co + 5]  = a0*b01 + a1*b11 + a2*b21 + a3*b31;
+	c[co + 6]  = a0*b02 + a1*b12 + a2*b22 + a3*b32;
+	c[co + 7]  = a0*b03 + a1*b13 + a2*b23 + a3*b33;
+	a0 = a[ao + 8];  a1 = a[ao + 9];  a2 = a[ao + 10]; a3 = a[ao + 11];
+	c[co + 8]  = a0*b00 + a1*b10 + a2*b20 + a3*b30;
+	c[co + 9]  = a0*b01 + a1*b11 + a2*b21 + a3*b31;
+	c[co + 10] = a0*b02 + a1*b12 + a2*b22 + a3*b32;
+	c[co + 11] = a0*b03 + a1*b13 + a2*b23 + a3*b33;
+	a0 = a[ao + 12]; a1 = a[ao + 13]; a2 = a[ao + 14]; a3 = a[ao + 15];
+	c[co + 12] = a0*b00 + a1*b10 + a2*b20 + a3*b30;
+	c[co + 13] = a0*b01 + a1*b11 + a2*b21 + a3*b31;
+	c[co + 14] = a0*b02 + a1*b12 + a2*b22 + a3*b32;
+	c[co + 15] = a0*b03 + a1*b13 + a2*b23 + a3*b33;
+    } // end mult4
+
+    /**
+     * Calculate c = a*b for 8 x 8 matrices at offsets ao, bo and co,
+     * with vectors of 4 doubles. A row of c is kept in two vectors.
+     */
+    static void mult8(double[] a, int ao, double[] b, int bo, double[] c, int co) {
+	for (int i = 0; i < 8; i++) {
+	    int ar = ao + i*8;
+	    DoubleVector av = DoubleVector.broadcast(SPECIES, a[ar]);
+	    DoubleVector c0 = DoubleVector.fromArray(SPECIES, b, bo).mul(av);
+	    DoubleVector c1 = DoubleVector.fromArray(SPECIES, b, bo + 4).mul(av);
+	    av = DoubleVector.broadcast(SPECIES, a[ar + 1]);
+	    c0 = DoubleVector.fromArray(SPECIES, b, bo + 8).fma(av, c0);
+	    c1 = DoubleVector.fromArray(SPECIES, b, bo + 12).fma(av, c1);
+	    av = DoubleVector.broadcast(SPECIES, a[ar + 2]);
+	    c0 = DoubleVector.fromArray(SPECIES, b, bo + 16).fma(av, c0);
+	    c1 = DoubleVector.fromArray(SPECIES, b, bo + 20).fma(av, c1);
+	    av = DoubleVector.broadcast(SPECIES, a[ar + 3]);
+	    c0 = DoubleVector.fromArray(SPECIES, b, bo + 24).fma(av, c0);
+	    c1 = DoubleVector.fromArray(SPECIES, b, bo + 28).fma(av, c1);
+	    av = DoubleVector.broadcast(SPECIES, a[ar + 4]);
+	    c0 = DoubleVector.fromArray(SPECIES, b, bo + 32).fma(av, c0);
+	    c1 = DoubleVector.fromArray(SPECIES, b, bo + 36).fma(av, c1);
+	    av = DoubleVector.broadcast(SPECIES, a[ar + 5]);
+	    c0 = DoubleVector.fromArray(SPECIES, b, bo + 40).fma(av, c0);
+	    c1 = DoubleVector.fromArray(SPECIES, b, bo + 44).fma(av, c1);
+	    av = DoubleVector.broadcast(SPECIES, a[ar + 6]);
+	    c0 = DoubleVector.fromArray(SPECIES, b, bo + 48).fma(av, c0);
+	    c1 = DoubleVector.fromArray(SPECIES, b, bo + 52).fma(av, c1);
+	    av = DoubleVector.broadcast(SPECIES, a[ar + 7]);
+	    c0 = DoubleVector.fromArray(SPECIES, b, bo + 56).fma(av, c0);
+	    c1 = DoubleVector.fromArray(SPECIES, b, bo + 60).fma(av, c1);
+	    c0.intoArray(c, co + i*8);
+	    c1.intoArray(c, co + i*8 + 4);
+	}
+    } // end mult8
+
+    /**
+     * Calculate c = a*b for 8 x 8 matrices at offsets ao, bo and co,
+     * with vectors of 8 doubles. Two rows of c are kept in two
+     * vectors, so each row of b is loaded once for both.
+     */
+    static void mult8Wide(double[] a, int ao, double[] b, int bo, double[] c, int co) {
+	for (int i = 0; i < 8; i += 2) {
+	    int ar = ao + i*8;
+	    DoubleVector bk = DoubleVector.fromArray(SPECIES, b, bo);
+	    DoubleVector c0 = bk.mul(a[ar]);
+	    DoubleVector c1 = bk.mul(a[ar + 8]);
+	    bk = DoubleVector.fromArray(SPECIES, b, bo + 8);
+	    c0 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 1]), c0);
+	    c1 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 9]), c1);
+	    bk = DoubleVector.fromArray(SPECIES, b, bo + 16);
+	    c0 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 2]), c0);
+	    c1 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 10]), c1);
+	    bk = DoubleVector.fromArray(SPECIES, b, bo + 24);
+	    c0 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 3]), c0);
+	    c1 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 11]), c1);
+	    bk = DoubleVector.fromArray(SPECIES, b, bo + 32);
+	    c0 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 4]), c0);
+	    c1 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 12]), c1);
+	    bk = DoubleVector.fromArray(SPECIES, b, bo + 40);
+	    c0 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 5]), c0);
+	    c1 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 13]), c1);
+	    bk = DoubleVector.fromArray(SPECIES, b, bo + 48);
+	    c0 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 6]), c0);
+	    c1 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 14]), c1);
+	    bk = DoubleVector.fromArray(SPECIES, b, bo + 56);
+	    c0 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 7]), c0);
+	    c1 = bk.fma(DoubleVector.broadcast(SPECIES, a[ar + 15]), c1);
+	    c0.intoArray(c, co + i*8);
+	    c1.intoArray(c, co + i*8 + 8);
+	}
+    } // end mult8Wide
+
+    /**
+     * Calculate c[p] = a[p]*b[p] for s x s matrices, p = first, ...,
+     * last - 1, where s is a multiple of the vector length. The loop
+     * over the batch is in this method, so that the JIT compiles it
+     * with the kernel as one unit.
+     */
+    static void multVec(int s, int first, int last, double[] a, double[] b,
+			double[] c) {
+	for (int p = first; p < last; p++) {
+	    int ao = p*s*s, bo = ao, co = ao;
+	    for (int i = 0; i < s; i++) {
+		int ar = ao + i*s;
+		int cr = co + i*s;
+		DoubleVector av = DoubleVector.broadcast(SPECIES, a[ar]);
+		for (int j = 0; j < s; j += L) {
+		    DoubleVector.fromArray(SPECIES, b, bo + j).mul(av).intoArray(c, cr + j);
+		}
+		for (int k = 1; k < s; k++) {
+		    av = DoubleVector.broadcast(SPECIES, a[ar + k]);
+		    int br = bo + k*s;
+		    for (int j = 0; j < s; j += L) {
+			DoubleVector.fromArray(SPECIES, b, br + j)
+			    .fma(av, DoubleVector.fromArray(SPECIES, c, cr + j))
+			    .intoArray(c, cr + j);
+		    }
+		}
+	    }
+	}
+    } // end multVec
+
+    /**
+     * Calculate c = a*b for n x l and l x m matrices at offsets ao, bo
+     * and co. The loops are in i, k, j order.
+     */
+    static void multGeneral(int n, int l, int m, double[] a, int ao,
+			    double[] b, int bo, double[] c, int co) {
+	for (int i = 0; i < n; i++) {
+	    int cr = co + i*m;
+	    for (int j = 0; j < m; j++) {
+		c[cr + j] = 0.0;
+	    }
+	    for (int k = 0; k < l; k++) {
+		double aik = a[ao + i*l + k];
+		int br = bo + k*m;
+		for (int j = 0; j < m; j++) {
+		    c[cr + j] += aik*b[br + j];
+		}
+	    }
+	}
+    } // end multGeneral
+
+    /* Tile class: a tile is 'size' consecutive products of the batch. */
+    class BatchTile implements TileKernel {
+	int size, count;
+	int n, l, m;
+	int kernel;  // Size of the kernel, or 0 for multGeneral.
+	double[] a, b, c;
+
+	public void compute(int tile, int worker) {
+	    int first = tile*size;
+	    int last = Math.min(first + size, count);
+	    int aSize = n*l, bSize = l*m, cSize = n*m;
+	    switch (kernel) {
+	    case 4:
+		for (int p = first; p < last; p++) {
+		    mult4(a, p*16, b, p*16, c, p*16);
+		}
+		break;
+	    case 8:
+		if (L == 8) {
+		    for (int p = first; p < last; p++) {
+			mult8Wide(a, p*64, b, p*64, c, p*64);
+		    }
+		} else {
+		    for (int p = first; p < last; p++) {
+			mult8(a, p*64, b, p*64, c, p*64);
+		    }
+		}
+		break;
+	    case 16:
+	    case 32:
+	    case 64:
+		multVec(kernel, first, last, a, b, c);
+		break;
+	    default:
+		for (int p = first; p < last; p++) {
+		    multGeneral(n, l, m, a, p*aSize, b, p*bSize, c, p*cSize);
+		}
+	    }
+	} // end compute
+    } // end inner class BatchTile
+} // end class BatchedMult
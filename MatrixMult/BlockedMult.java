@@ -0,0 +1,277 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Implements a cache-blocked parallel algorithm for matrix
+ * multiplication. c is split into tiles of blockI x blockJ elements,
+ * which the threads of a TileScheduler claim one at a time, so each
+ * tile of c is written by one thread only. A tile is computed in
+ * steps of blockK along the inner dimension: the blockI x blockK block
+ * of a and the blockK x blockJ block of b are small enough to stay in
+ * the cache while they are used blockI*blockJ*blockK times.
+ * The innermost loop runs along a row of b and a row of c with unit
+ * stride, which the JIT can vectorize.
+ * The block sizes can be tuned to the machine with autotune().
+ * gemm reuses one tile kernel, so after the first call it allocates
+ * nothing.
+ */
+class BlockedMult implements MatrixMultiplicator, Gemm, AutoCloseable {
+    static final int[] TILE_SIZES = {64, 128, 256};  // blockI = blockJ.
+    static final int[] DEPTH_SIZES = {64, 128, 256}; // blockK.
+    static final int TUNE_SIZE = 768;  // Size of the tuning matrices.
+    static final int TUNE_TESTS = 3;
+    int numThreads;
+    TileScheduler scheduler;
+    GemmTile gemmTile = new GemmTile();
+    int blockI, blockJ, blockK;
+
+    BlockedMult() {
+	this(64, 256, 128);
+    }
+
+    /**
+     * @param blockI: Nr of rows in a tile of c.
+     * @param blockJ: Nr of columns in a tile of c.
+     * @param blockK: Nr of elements of the inner dimension per step.
+     */
+    BlockedMult(int blockI, int blockJ, int blockK) {
+	numThreads = Runtime.getRuntime().availableProcessors();
+	if (numThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    numThreads = 32;
+	}
+	System.out.println("Algo 2: nThreads = " + numThreads);
+	scheduler = new TileScheduler(numThreads);
+	this.blockI = blockI;
+	this.blockJ = blockJ;
+	this.blockK = blockK;
+    }
+
+    /**
+     * Calculate the product of two matrices a and b.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @return: the result matrix.
+     */
+    public double[][] mult(double[][] a, double[][] b) {
+	int n = a.length;
+	int m = (b.length == 0) ? 0 : b[0].length;
+	double[][] c = new double[n][m];
+	int tilesI = (n + blockI - 1)/blockI;
+	int tilesJ = (m + blockJ - 1)/blockJ;
+	scheduler.run(tilesI*tilesJ, new Para(tilesJ, a, b, c));
+	return c;
+    } // end mult
+
+    /**
+     * Calculate c = alpha*op(a)*op(b) + beta*c.
+     * @param transA: Use a^T for op(a).
+     * @param transB: Use b^T for op(b).
+     * @param alpha: The factor of the product.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @param beta: The factor of c.
+     * @param c: The result matrix.
+     */
+    public void gemm(boolean transA, boolean transB, double alpha,
+		     double[][] a, double[][] b, double beta, double[][] c) {
+	Gemm.checkSizes(transA, transB, a, b, c);
+	GemmTile g = gemmTile;
+	scheduler.acquire();
+	try {
+	    g.transA = transA;
+	    g.transB = transB;
+	    g.alpha = alpha;
+	    g.beta = beta;
+	    g.a = a;
+	    g.b = b;
+	    g.c = c;
+	    g.tilesJ = (c[0].length + blockJ - 1)/blockJ;
+	    int tilesI = (c.length + blockI - 1)/blockI;
+	    scheduler.run(tilesI*g.tilesJ, g);
+	} finally {
+	    g.a = g.b = g.c = null;
+	    scheduler.release();
+	}
+    } // end gemm
+
+    /**
+     * Measure the block sizes in TILE_SIZES x DEPTH_SIZES on two
+     * random TUNE_SIZE x TUNE_SIZE matrices, and keep the fastest.
+     * @return: The GFLOP/s of the fastest block sizes.
+     */
+    double autotune() {
+	double[][] a = new double[TUNE_SIZE][TUNE_SIZE];
+	double[][] b = new double[TUNE_SIZE][TUNE_SIZE];
+	Random rand = new Random(1234);
+	for (int i = 0; i < TUNE_SIZE; i++) {
+	    for (int j = 0; j < TUNE_SIZE; j++) {
+		a[i][j] = rand.nextDouble();
+		b[i][j] = rand.nextDouble();
+	    }
+	}
+
+	// Warm up the JIT.
+	mult(a, b);
+
+	double bestTime = Double.MAX_VALUE;
+	int bestTile = blockI, bestDepth = blockK;
+	double[] times = new double[TUNE_TESTS];
+	for (int tile : TILE_SIZES) {
+	    for (int depth : DEPTH_SIZES) {
+		blockI = tile;
+		blockJ = tile;
+		blockK = depth;
+		for (int t = 0; t < TUNE_TESTS; t++) {
+		    long startTime = System.nanoTime();
+		    mult(a, b);
+		    times[t] = (System.nanoTime() - startTime)/1e9;
+		}
+		Arrays.sort(times);
+		if (times[TUNE_TESTS/2] < bestTime) {
+		    bestTime = times[TUNE_TESTS/2];
+		    bestTile = tile;
+		    bestDepth = depth;
+		}
+	    }
+	}
+	blockI = bestTile;
+	blockJ = bestTile;
+	blockK = bestDepth;
+	double gflops = 2.0*TUNE_SIZE*TUNE_SIZE*TUNE_SIZE/bestTime/1e9;
+	System.out.format("BlockedMult: tile = %d, depth = %d, %.2f GFLOP/s\n",
+			  blockI, blockK, gflops);
+	return gflops;
+    } // end autotune
+
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "blockedMult";
+    }
+
+    /* Tile class: tiles are numbered row by row. */
+    class Para implements TileKernel {
+	int tilesJ;      // Nr of tiles in a row of tiles.
+	double[][] a, b; // The matrices to be multiplied.
+	double[][] c;    // The result matrix.
+
+	Para(int tilesJ, double[][] a, double[][] b, double[][] c) {
+	    this.tilesJ = tilesJ;
+	    this.a = a;
+	    this.b = b;
+	    this.c = c;
+	}
+
+	public void compute(int tile, int worker) {
+	    int n = c.length;
+	    int m = c[0].length;
+	    int l = b.length;
+	    int i0 = (tile/tilesJ)*blockI;
+	    int j0 = (tile%tilesJ)*blockJ;
+	    int i1 = Math.min(i0 + blockI, n);
+	    int j1 = Math.min(j0 + blockJ, m);
+	    for (int k0 = 0; k0 < l; k0 += blockK) {
+		int k1 = Math.min(k0 + blockK, l);
+		multBlock(i0, i1, j0, j1, k0, k1);
+	    }
+	} // end compute
+
+	/**
+	 * Add a[i0..i1][k0..k1] * b[k0..k1][j0..j1] to c[i0..i1][j0..j1].
+	 */
+	void multBlock(int i0, int i1, int j0, int j1, int k0, int k1) {
+	    for (int i = i0; i < i1; i++) {
+		double[] aRow = a[i];
+		double[] cRow = c[i];
+		for (int k = k0; k < k1; k++) {
+		    double aik = aRow[k];
+		    double[] bRow = b[k];
+		    for (int j = j0; j < j1; j++) {
+			cRow[j] += aik*bRow[j];
+		    }
+		}
+	    }
+	} // end multBlock
+    } // end inner class Para
+
+    /* Tile class for gemm: tiles are numbered row by row. */
+    class GemmTile implements TileKernel {
+	int tilesJ;
+	boolean transA, transB;
+	double alpha, beta;
+	double[][] a, b, c;
+
+	public void compute(int tile, int worker) {
+	    int n = c.length, m = c[0].length;
+	    int l = transA ? a.length : a[0].length;
+	    int i0 = (tile/tilesJ)*blockI;
+	    int j0 = (tile%tilesJ)*blockJ;
+	    int i1 = Math.min(i0 + blockI, n);
+	    int j1 = Math.min(j0 + blockJ, m);
+	    for (int i = i0; i < i1; i++) {
+		Gemm.scaleRow(c[i], j0, j1, beta);
+	    }
+	    for (int k0 = 0; k0 < l; k0 += blockK) {
+		int k1 = Math.min(k0 + blockK, l);
+		if (transB) {
+		    dotBlock(i0, i1, j0, j1, k0, k1);
+		} else {
+		    multBlock(i0, i1, j0, j1, k0, k1);
+		}
+	    }
+	} // end compute
+
+	/**
+	 * Add alpha*op(a)[i0..i1][k0..k1] * b[k0..k1][j0..j1] to
+	 * c[i0..i1][j0..j1].
+	 */
+	void multBlock(int i0, int i1, int j0, int j1, int k0, int k1) {
+	    for (int i = i0; i < i1; i++) {
+		double[] cRow = c[i];
+		for (int k = k0; k < k1; k++) {
+		    double aik = alpha*(transA ? a[k][i] : a[i][k]);
+		    double[] bRow = b[k];
+		    for (int j = j0; j < j1; j++) {
+			cRow[j] += aik*bRow[j];
+		    }
+		}
+	    }
+	} // end multBlock
+
+	/**
+	 * Add alpha*op(a)[i0..i1][k0..k1] * b^T[k0..k1][j0..j1] to
+	 * c[i0..i1][j0..j1]. Column j of b^T is row j of b, so each
+	 * element is a dot product.
+	 */
+	void dotBlock(int i0, int i1, int j0, int j1, int k0, int k1) {
+	    for (int i = i0; i < i1; i++) {
+		double[] cRow = c[i];
+		for (int j = j0; j < j1; j++) {
+		    double[] bRow = b[j];
+		    double tmp = 0.0;
+		    if (transA) {
+			for (int k = k0; k < k1; k++) {
+			    tmp += a[k][i]*bRow[k];
+			}
+		    } else {
+			double[] aRow = a[i];
+			for (int k = k0; k < k1; k++) {
+			    tmp += aRow[k]*bRow[k];
+			}
+		    }
+		    cRow[j] += alpha*tmp;
+		}
+	    }
+	} // end dotBlock
+    } // end inner class GemmTile
+} // end class BlockedMult
@@ -0,0 +1,33 @@
+/**
+ * Lets a FlatMatrixMultiplicator be used as a MatrixMultiplicator, by
+ * copying the input to and the result from the flat layout.
+ */
+class FlatAdapter implements MatrixMultiplicator, AutoCloseable {
+    FlatMatrixMultiplicator m;
+
+    FlatAdapter(FlatMatrixMultiplicator m) {
+	this.m = m;
+    }
+
+    public double[][] mult(double[][] a, double[][] b) {
+	return m.mult(Matrix.fromArray(a), Matrix.fromArray(b)).toArray();
+    }
+
+    /**
+     * Close the adapted algorithm, if it has anything to close.
+     */
+    public void close() {
+	if (m instanceof AutoCloseable) {
+	    try {
+		((AutoCloseable) m).close();
+	    } catch (Exception e) {
+		System.out.println(e.toString());
+		System.exit(1);
+	    }
+	}
+    }
+
+    public String toString() {
+	return m.toString();
+    }
+} // end class FlatAdapter
@@ -0,0 +1,8 @@
+/**
+ * An interface for the classes multiplying matrices stored as Matrix.
+ * As for MatrixMultiplicator, the implementations are not thread safe.
+ */
+interface FlatMatrixMultiplicator {
+    public Matrix mult(Matrix a, Matrix b);
+    public String toString();
+}
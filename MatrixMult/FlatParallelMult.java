@@ -0,0 +1,92 @@
+/**
+ * Implements the standard parallel algorithm for matrix multiplication
+ * on matrices in the flat layout.
+ */
+class FlatParallelMult implements FlatMatrixMultiplicator, AutoCloseable {
+    int numThreads;
+    TileScheduler scheduler;
+
+    FlatParallelMult() {
+	numThreads = Runtime.getRuntime().availableProcessors();
+	if (numThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    numThreads = 32;
+	}
+	System.out.println("Algo 2: nThreads = " + numThreads);
+	scheduler = new TileScheduler(numThreads);
+    }
+
+    /**
+     * Calculate the product of two matrices a and b.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @return: the result matrix.
+     */
+    public Matrix mult(Matrix a, Matrix b) {
+	int n = a.rows;
+	int m = b.cols;
+	Matrix c = new Matrix(n, m);
+
+	boolean byCols = m > n;
+	int lines = byCols ? m : n;
+	int size = scheduler.rowsPerTile(lines);
+	scheduler.run((lines + size - 1)/size, new Para(size, byCols, a, b, c));
+	return c;
+    } // end mult
+
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "flatParMult";
+    }
+
+    /* Tile class: a tile is 'size' consecutive rows or columns of c. */
+    class Para implements TileKernel {
+	int size;
+	boolean byCols;
+	Matrix a, b; // The matrices to be multiplied.
+	Matrix c;    // The result matrix.
+
+	Para(int size, boolean byCols, Matrix a, Matrix b, Matrix c) {
+	    this.size = size;
+	    this.byCols = byCols;
+	    this.a = a;
+	    this.b = b;
+	    this.c = c;
+	}
+
+	public void compute(int tile, int worker) {
+	    double[] ad = a.data, bd = b.data, cd = c.data;
+	    int m = b.cols, l = a.cols;
+	    int startRow = 0, stopRow = a.rows, startCol = 0, stopCol = m;
+	    if (byCols) {
+		startCol = tile*size;
+		stopCol = Math.min(startCol + size, m);
+	    } else {
+		startRow = tile*size;
+		stopRow = Math.min(startRow + size, a.rows);
+	    }
+	    for (int i = startRow; i < stopRow; i++) {
+		int aRow = a.offset + i*a.stride;
+		for (int j = startCol; j < stopCol; j++) {
+		    double tmp = 0.0;
+		    int bInd = b.offset + j;
+		    for (int k = 0; k < l; k++) {
+			tmp += ad[aRow + k]*bd[bInd];
+			bInd += b.stride;
+		    }
+		    cd[i*m + j] = tmp;
+		}
+	    }
+	}
+    } // end inner class Para
+} // end class FlatParallelMult
@@ -0,0 +1,99 @@
+/**
+ * Implements a parallel algorithm for matrix multiplication with
+ * transposition on matrices in the flat layout. b is transposed into
+ * a new matrix by a Transposer on the same scheduler, so the input is
+ * left unchanged, and the inner loop reads a row of a and a row of
+ * b^T, both with unit stride.
+ */
+class FlatParallelMultTransposed implements FlatMatrixMultiplicator, AutoCloseable {
+    int numThreads;
+    TileScheduler scheduler;
+    Transposer transposer;
+
+    FlatParallelMultTransposed() {
+	numThreads = Runtime.getRuntime().availableProcessors();
+	if (numThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    numThreads = 32;
+	}
+	System.out.println("Algo 2: nThreads = " + numThreads);
+	scheduler = new TileScheduler(numThreads);
+	transposer = new Transposer(scheduler);
+    }
+
+    /**
+     * Calculate the product of two matrices a and b.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @return: the result matrix.
+     */
+    public Matrix mult(Matrix a, Matrix b) {
+	int n = a.rows;
+	int m = b.cols;
+	Matrix c = new Matrix(n, m);
+
+	// Transpose the b matrix.
+	Matrix bt = transposer.transpose(b);
+
+	boolean byCols = m > n;
+	int lines = byCols ? m : n;
+	int size = scheduler.rowsPerTile(lines);
+	scheduler.run((lines + size - 1)/size, new Para(size, byCols, a, bt, c));
+	return c;
+    } // end mult
+
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "flatParMultTransposed";
+    }
+
+    /* Tile class: a tile is 'size' consecutive rows or columns of c. */
+    class Para implements TileKernel {
+	int size;
+	boolean byCols;
+	Matrix a, bt; // The matrices to be multiplied, b transposed.
+	Matrix c;     // The result matrix.
+
+	Para(int size, boolean byCols, Matrix a, Matrix bt, Matrix c) {
+	    this.size = size;
+	    this.byCols = byCols;
+	    this.a = a;
+	    this.bt = bt;
+	    this.c = c;
+	}
+
+	public void compute(int tile, int worker) {
+	    double[] ad = a.data, bd = bt.data, cd = c.data;
+	    int m = bt.rows, l = a.cols;
+	    int startRow = 0, stopRow = a.rows, startCol = 0, stopCol = m;
+	    if (byCols) {
+		startCol = tile*size;
+		stopCol = Math.min(startCol + size, m);
+	    } else {
+		startRow = tile*size;
+		stopRow = Math.min(startRow + size, a.rows);
+	    }
+	    for (int i = startRow; i < stopRow; i++) {
+		int aRow = a.offset + i*a.stride;
+		for (int j = startCol; j < stopCol; j++) {
+		    int bRow = bt.offset + j*bt.stride;
+		    double tmp = 0.0;
+		    for (int k = 0; k < l; k++) {
+			tmp += ad[aRow + k]*bd[bRow + k];
+		    }
+		    cd[i*m + j] = tmp;
+		}
+	    }
+	}
+    } // end inner class Para
+} // end class FlatParallelMultTransposed
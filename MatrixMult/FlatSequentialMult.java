@@ -0,0 +1,39 @@
+/**
+ * Implements the sequential algorithm for matrix multiplication on
+ * matrices in the flat layout.
+ */
+class FlatSequentialMult implements FlatMatrixMultiplicator {
+
+    /**
+     * Calculate the product of two matrices.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @return: the result matrix.
+     */
+    public Matrix mult(Matrix a, Matrix b) {
+	int n = a.rows, m = b.cols, l = a.cols;
+	Matrix c = new Matrix(n, m);
+	double[] ad = a.data, bd = b.data, cd = c.data;
+
+	for (int i = 0; i < n; i++) {
+	    int aRow = a.offset + i*a.stride;
+	    for (int j = 0; j < m; j++) {
+		double tmp = 0.0;
+		int bInd = b.offset + j;
+		for (int k = 0; k < l; k++) {
+		    tmp += ad[aRow + k]*bd[bInd];
+		    bInd += b.stride;
+		}
+		cd[i*m + j] = tmp;
+	    }
+	}
+	return c;
+    } // end mult
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "flatSeqMult";
+    }
+} // end FlatSequentialMult
@@ -0,0 +1,42 @@
+import java.util.Arrays;
+
+/**
+ * An interface for the classes computing C = alpha*op(A)*op(B) + beta*C
+ * into a result matrix given by the caller, where op(X) is X, or X^T
+ * if the transpose flag is set. As in BLAS, C is not read when beta
+ * is 0.
+ */
+interface Gemm {
+    public void gemm(boolean transA, boolean transB, double alpha,
+		     double[][] a, double[][] b, double beta, double[][] c);
+
+    /**
+     * Check that op(A) is n x l, op(B) is l x m and C is n x m.
+     */
+    static void checkSizes(boolean transA, boolean transB,
+			   double[][] a, double[][] b, double[][] c) {
+	int aRows = transA ? a[0].length : a.length;
+	int aCols = transA ? a.length : a[0].length;
+	int bRows = transB ? b[0].length : b.length;
+	int bCols = transB ? b.length : b[0].length;
+	if (aCols != bRows || c.length != aRows || c[0].length != bCols) {
+	    throw new IllegalArgumentException("gemm: op(A) is " + aRows + "x" +
+					       aCols + ", op(B) is " + bRows +
+					       "x" + bCols + ", C is " + c.length +
+					       "x" + c[0].length);
+	}
+    } // end checkSizes
+
+    /**
+     * Multiply row[from..to] by beta. The row is cleared if beta is 0.
+     */
+    static void scaleRow(double[] row, int from, int to, double beta) {
+	if (beta == 0.0) {
+	    Arrays.fill(row, from, to, 0.0);
+	} else if (beta != 1.0) {
+	    for (int j = from; j < to; j++) {
+		row[j] *= beta;
+	    }
+	}
+    } // end scaleRow
+}
@@ -0,0 +1,107 @@
+/**
+ * A matrix of doubles stored row by row in one contiguous array.
+ * Element (i, j) is at data[offset + i*stride + j], so a row is a
+ * run of cols consecutive doubles, and the inner loops of the
+ * multiplication index one array instead of following a reference to
+ * each row. The stride may be larger than cols, so that a matrix can
+ * be a view of a block of a larger matrix.
+ */
+class Matrix {
+    int rows, cols;
+    int stride;   // Distance in data between the start of two rows.
+    int offset;   // Index in data of element (0, 0).
+    double[] data;
+
+    /**
+     * Create a zero matrix.
+     * @param rows: Nr of rows.
+     * @param cols: Nr of columns.
+     */
+    Matrix(int rows, int cols) {
+	this(rows, cols, cols, 0, new double[rows*cols]);
+    }
+
+    /**
+     * Create a matrix on an existing array.
+     * @param rows: Nr of rows.
+     * @param cols: Nr of columns.
+     * @param stride: Distance between the start of two rows, >= cols.
+     * @param offset: Index of element (0, 0).
+     * @param data: The array holding the elements.
+     */
+    Matrix(int rows, int cols, int stride, int offset, double[] data) {
+	if (stride < cols) {
+	    throw new IllegalArgumentException("stride < cols");
+	}
+	this.rows = rows;
+	this.cols = cols;
+	this.stride = stride;
+	this.offset = offset;
+	this.data = data;
+    }
+
+    /**
+     * Return element (i, j).
+     */
+    double get(int i, int j) {
+	return data[offset + i*stride + j];
+    }
+
+    /**
+     * Set element (i, j).
+     */
+    void set(int i, int j, double v) {
+	data[offset + i*stride + j] = v;
+    }
+
+    /**
+     * Return a view of a block of this matrix. The view shares the
+     * array, so writes to it are seen in this matrix.
+     * @param row: The first row of the block.
+     * @param col: The first column of the block.
+     * @param rows: Nr of rows in the block.
+     * @param cols: Nr of columns in the block.
+     */
+    Matrix view(int row, int col, int rows, int cols) {
+	return new Matrix(rows, cols, stride, offset + row*stride + col, data);
+    }
+
+    /**
+     * Copy a double[][] matrix into a new Matrix.
+     * @param a: The matrix. All rows must have the same length.
+     */
+    static Matrix fromArray(double[][] a) {
+	int rows = a.length;
+	int cols = (rows == 0) ? 0 : a[0].length;
+	Matrix m = new Matrix(rows, cols);
+	for (int i = 0; i < rows; i++) {
+	    System.arraycopy(a[i], 0, m.data, i*cols, cols);
+	}
+	return m;
+    } // end fromArray
+
+    /**
+     * Copy this matrix into a new double[][].
+     */
+    double[][] toArray() {
+	double[][] a = new double[rows][cols];
+	for (int i = 0; i < rows; i++) {
+	    System.arraycopy(data, offset + i*stride, a[i], 0, cols);
+	}
+	return a;
+    } // end toArray
+
+    /**
+     * Return a string showing the matrix.
+     */
+    public String toString() {
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < rows; i++) {
+	    for (int j = 0; j < cols; j++) {
+		sb.append(get(i, j)).append(' ');
+	    }
+	    sb.append('\n');
+	}
+	return sb.toString();
+    }
+} // end class Matrix
@@ -0,0 +1,346 @@
+import jdk.incubator.vector.*;
+
+/**
+ * Implements a parallel algorithm for matrix multiplication in the
+ * style of BLIS. b is cut into KC x NC blocks, and each block is
+ * packed into panels of NR columns, stored k by k. a is cut into
+ * MC x KC blocks, packed into panels of MR rows. A micro-kernel
+ * multiplies one panel of a by one panel of b, and keeps the MR x NR
+ * block of c in MR*NR/L vector registers, where L is the nr of
+ * doubles in a vector. Each step of the kernel loads two vectors of
+ * b, and adds them times one element of a to each row with fma.
+ * The work is dealt out by a TileScheduler. The threads pack each
+ * block of b together and share it, and then claim tiles of whole
+ * panels of rows of c, at most MC rows each, and pack their own
+ * blocks of a. If c has more columns than rows, the tiles are whole
+ * panels of columns of c instead, at most NC columns each, and each
+ * thread packs its own blocks of a and b. The tiles are sized to
+ * give about TileScheduler.TILES_PER_THREAD tiles per thread.
+ * The pack buffers of each worker are kept between calls, and the
+ * buffers of b are sized to the tile width.
+ * NB: Compile and run with --add-modules jdk.incubator.vector.
+ */
+class PackedSimdMult implements MatrixMultiplicator, AutoCloseable {
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    static final int L = SPECIES.length();
+    static final int MR = 6;       // Rows of c per micro-kernel call.
+    static final int NR = 2*L;     // Columns of c per micro-kernel call.
+    static final int KC = 256;     // Depth of a packed block.
+    static final int MC = 16*MR;   // Rows of a packed block of a.
+    static final int NC = 128*NR;  // Columns of a packed block of b.
+    int numThreads;
+    TileScheduler scheduler;
+    double[] bPack = new double[0];  // The shared block of b, by rows.
+    double[][] aPacks;   // The block of a of each worker.
+    double[][] bPacks;   // The block of b of each worker, by columns.
+    double[][] tiles;    // The edge buffer of each worker.
+    PackTile packTile = new PackTile();
+    RowTile rowTile = new RowTile();
+    ColTile colTile = new ColTile();
+
+    // The current call: c = a*b, split into tiles of 'size' rows or
+    // columns, and the block (pc, jc) of b that is packed, by rows.
+    double[][] a, b, c;
+    int size;
+    int pc, kc, jc, nc;
+
+    PackedSimdMult() {
+	numThreads = Runtime.getRuntime().availableProcessors();
+	if (numThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    numThreads = 32;
+	}
+	System.out.println("Algo 2: nThreads = " + numThreads);
+	scheduler = new TileScheduler(numThreads);
+	aPacks = new double[numThreads][];
+	bPacks = new double[numThreads][];
+	tiles = new double[numThreads][];
+    }
+
+    /**
+     * Calculate the product of two matrices a and b.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @return: the result matrix.
+     */
+    public double[][] mult(double[][] a, double[][] b) {
+	int n = a.length;
+	int l = b.length;
+	int m = (l == 0) ? 0 : b[0].length;
+	double[][] c = new double[n][m];
+	scheduler.acquire();
+	try {
+	    this.a = a;
+	    this.b = b;
+	    this.c = c;
+	    if (m > n) {
+		multByCols(n, l, m);
+	    } else {
+		multByRows(n, l, m);
+	    }
+	} finally {
+	    this.a = this.b = this.c = null;
+	    scheduler.release();
+	}
+	return c;
+    } // end mult
+
+    /**
+     * Multiply with tiles of rows of c, and the blocks of b shared.
+     */
+    void multByRows(int n, int l, int m) {
+	size = tileSize(n, MR, MC);
+	int width = Math.min(NC, roundUp(m, NR));
+	if (bPack.length < KC*width) {
+	    bPack = new double[KC*width];
+	}
+	allocateBuffers(0);
+
+	for (jc = 0; jc < m; jc += NC) {
+	    nc = Math.min(NC, m - jc);
+	    for (pc = 0; pc < l; pc += KC) {
+		kc = Math.min(KC, l - pc);
+		// Pack this block of b together, one panel per tile, and
+		// then multiply the rows of a by it.
+		scheduler.run((nc + NR - 1)/NR, packTile);
+		scheduler.run((n + size - 1)/size, rowTile);
+	    }
+	}
+    } // end multByRows
+
+    /**
+     * Multiply with tiles of columns of c, each packing its own
+     * blocks of b.
+     */
+    void multByCols(int n, int l, int m) {
+	size = tileSize(m, NR, NC);
+	allocateBuffers(KC*size);
+	scheduler.run((m + size - 1)/size, colTile);
+    } // end multByCols
+
+    /**
+     * Return the nr of rows or columns in a tile: whole panels, about
+     * TileScheduler.TILES_PER_THREAD tiles per thread, and at most max.
+     * @param lines: The nr of rows or columns of c.
+     * @param panel: The nr of rows or columns in a panel.
+     * @param max: The largest tile.
+     */
+    int tileSize(int lines, int panel, int max) {
+	return Math.min(max, roundUp(scheduler.rowsPerTile(lines), panel));
+    } // end tileSize
+
+    /**
+     * Return x rounded up to a multiple of p.
+     */
+    static int roundUp(int x, int p) {
+	return (x + p - 1)/p*p;
+    } // end roundUp
+
+    /**
+     * Let each worker have its buffers, and a buffer of b of at least
+     * bLength elements. Buffers from earlier calls are reused.
+     */
+    void allocateBuffers(int bLength) {
+	for (int w = 0; w < numThreads; w++) {
+	    if (aPacks[w] == null) {
+		aPacks[w] = new double[MC*KC];
+		tiles[w] = new double[MR*NR];
+	    }
+	    if (bLength > 0 && (bPacks[w] == null || bPacks[w].length < bLength)) {
+		bPacks[w] = new double[bLength];
+	    }
+	}
+    } // end allocateBuffers
+
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "packedSimdMult";
+    }
+
+    /**
+     * Pack the kc x nr block of b at (pc, j0) into a panel stored k
+     * by k, padded with zeros to NR columns.
+     */
+    static void packB(double[][] b, int pc, int kc, int j0, int nr,
+		      double[] bPack, int off) {
+	for (int k = 0; k < kc; k++) {
+	    double[] bRow = b[pc + k];
+	    int p = off + k*NR;
+	    int j = 0;
+	    for (; j < nr; j++) {
+		bPack[p + j] = bRow[j0 + j];
+	    }
+	    for (; j < NR; j++) {
+		bPack[p + j] = 0.0;
+	    }
+	}
+    } // end packB
+
+    /**
+     * Pack the mr x kc block of a at (i0, pc) into a panel stored k
+     * by k, padded with zeros to MR rows.
+     */
+    static void packA(double[][] a, int i0, int mr, int pc, int kc,
+		      double[] aPack, int off) {
+	for (int r = 0; r < MR; r++) {
+	    int p = off + r;
+	    if (r < mr) {
+		double[] aRow = a[i0 + r];
+		for (int k = 0; k < kc; k++) {
+		    aPack[p + k*MR] = aRow[pc + k];
+		}
+	    } else {
+		for (int k = 0; k < kc; k++) {
+		    aPack[p + k*MR] = 0.0;
+		}
+	    }
+	}
+    } // end packA
+
+    /**
+     * Multiply a packed panel of a by a packed panel of b, and add the
+     * MR x NR result to c at (i0, j0). Only the mr x nr part inside c
+     * is written.
+     */
+    static void microKernel(int kc, double[] aPack, int aOff,
+			    double[] bPack, int bOff,
+			    double[][] c, int i0, int j0, int mr, int nr,
+			    double[] tile) {
+	DoubleVector c00 = DoubleVector.zero(SPECIES), c01 = c00;
+	DoubleVector c10 = c00, c11 = c00, c20 = c00, c21 = c00;
+	DoubleVector c30 = c00, c31 = c00, c40 = c00, c41 = c00;
+	DoubleVector c50 = c00, c51 = c00;
+
+	for (int k = 0; k < kc; k++) {
+	    int bp = bOff + k*NR;
+	    int ap = aOff + k*MR;
+	    DoubleVector b0 = DoubleVector.fromArray(SPECIES, bPack, bp);
+	    DoubleVector b1 = DoubleVector.fromArray(SPECIES, bPack, bp + L);
+	    DoubleVector av = DoubleVector.broadcast(SPECIES, aPack[ap]);
+	    c00 = av.fma(b0, c00);
+	    c01 = av.fma(b1, c01);
+	    av = DoubleVector.broadcast(SPECIES, aPack[ap + 1]);
+	    c10 = av.fma(b0, c10);
+	    c11 = av.fma(b1, c11);
+	    av = DoubleVector.broadcast(SPECIES, aPack[ap + 2]);
+	    c20 = av.fma(b0, c20);
+	    c21 = av.fma(b1, c21);
+	    av = DoubleVector.broadcast(SPECIES, aPack[ap + 3]);
+	    c30 = av.fma(b0, c30);
+	    c31 = av.fma(b1, c31);
+	    av = DoubleVector.broadcast(SPECIES, aPack[ap + 4]);
+	    c40 = av.fma(b0, c40);
+	    c41 = av.fma(b1, c41);
+	    av = DoubleVector.broadcast(SPECIES, aPack[ap + 5]);
+	    c50 = av.fma(b0, c50);
+	    c51 = av.fma(b1, c51);
+	}
+
+	if (mr == MR && nr == NR) {
+	    addRow(c[i0], j0, c00, c01);
+	    addRow(c[i0 + 1], j0, c10, c11);
+	    addRow(c[i0 + 2], j0, c20, c21);
+	    addRow(c[i0 + 3], j0, c30, c31);
+	    addRow(c[i0 + 4], j0, c40, c41);
+	    addRow(c[i0 + 5], j0, c50, c51);
+	    return;
+	}
+
+	// An edge of c: go through the tile buffer.
+	c00.intoArray(tile, 0);
+	c01.intoArray(tile, L);
+	c10.intoArray(tile, NR);
+	c11.intoArray(tile, NR + L);
+	c20.intoArray(tile, 2*NR);
+	c21.intoArray(tile, 2*NR + L);
+	c30.intoArray(tile, 3*NR);
+	c31.intoArray(tile, 3*NR + L);
+	c40.intoArray(tile, 4*NR);
+	c41.intoArray(tile, 4*NR + L);
+	c50.intoArray(tile, 5*NR);
+	c51.intoArray(tile, 5*NR + L);
+	for (int r = 0; r < mr; r++) {
+	    double[] cRow = c[i0 + r];
+	    for (int j = 0; j < nr; j++) {
+		cRow[j0 + j] += tile[r*NR + j];
+	    }
+	}
+    } // end microKernel
+
+    /**
+     * Add two vectors to NR elements of a row of c.
+     */
+    static void addRow(double[] cRow, int j0, DoubleVector v0, DoubleVector v1) {
+	DoubleVector.fromArray(SPECIES, cRow, j0).add(v0).intoArray(cRow, j0);
+	DoubleVector.fromArray(SPECIES, cRow, j0 + L).add(v1).intoArray(cRow, j0 + L);
+    } // end addRow
+
+    /**
+     * Multiply rows i0..i1 of a by the kc x nc0 block of b at
+     * (pc0, jc0), and add the product to c.
+     * @param bPack: The block of b, packed.
+     * @param worker: The id of the calling worker, for its buffers.
+     */
+    void multRows(int i0, int i1, int jc0, int nc0, double[] bPack,
+		  int pc0, int kc, int worker) {
+	double[] aPack = aPacks[worker];
+	double[] tile = tiles[worker];
+	for (int ic = i0; ic < i1; ic += MC) {
+	    int mc = Math.min(MC, i1 - ic);
+	    for (int ir = 0; ir < mc; ir += MR) {
+		packA(a, ic + ir, Math.min(MR, mc - ir), pc0, kc, aPack, ir*kc);
+	    }
+	    for (int jr = 0; jr < nc0; jr += NR) {
+		int nr = Math.min(NR, nc0 - jr);
+		for (int ir = 0; ir < mc; ir += MR) {
+		    microKernel(kc, aPack, ir*kc, bPack, jr*kc, c, ic + ir,
+				jc0 + jr, Math.min(MR, mc - ir), nr, tile);
+		}
+	    }
+	}
+    } // end multRows
+
+    /* Tile class: a tile is one panel of the shared block of b. */
+    class PackTile implements TileKernel {
+	public void compute(int tile, int worker) {
+	    int jr = tile*NR;
+	    packB(b, pc, kc, jc + jr, Math.min(NR, nc - jr), bPack, jr*kc);
+	}
+    } // end inner class PackTile
+
+    /* Tile class: a tile is 'size' rows of c, times the shared block. */
+    class RowTile implements TileKernel {
+	public void compute(int tile, int worker) {
+	    int i0 = tile*size;
+	    multRows(i0, Math.min(i0 + size, c.length), jc, nc, bPack, pc, kc,
+		     worker);
+	}
+    } // end inner class RowTile
+
+    /* Tile class: a tile is 'size' columns of c, with all of a and b. */
+    class ColTile implements TileKernel {
+	public void compute(int tile, int worker) {
+	    double[] bp = bPacks[worker];
+	    int l = b.length;
+	    int j0 = tile*size;
+	    int nc0 = Math.min(size, c[0].length - j0);
+	    for (int p = 0; p < l; p += KC) {
+		int k = Math.min(KC, l - p);
+		for (int jr = 0; jr < nc0; jr += NR) {
+		    packB(b, p, k, j0 + jr, Math.min(NR, nc0 - jr), bp, jr*k);
+		}
+		multRows(0, c.length, j0, nc0, bp, p, k, worker);
+	    }
+	}
+    } // end inner class ColTile
+} // end class PackedSimdMult
@@ -2,9 +2,16 @@ import java.util.concurrent.*;
 
 /**
  * Implements the standard parallel algorithm for matrix multiplication.
+ * c is split into tiles of whole rows, or of whole columns if c has
+ * more columns than rows, so that both tall and wide results are
+ * split into enough tiles. The threads of a TileScheduler claim the
+ * tiles one at a time. gemm reuses one tile kernel, so
+ * after the first call it allocates nothing.
  */
-class ParallelMult implements MatrixMultiplicator {
+class ParallelMult implements MatrixMultiplicator, Gemm, AutoCloseable {
     int numThreads;
+    TileScheduler scheduler;
+    GemmTile gemmTile = new GemmTile();
 
     ParallelMult() {
 	numThreads = Runtime.getRuntime().availableProcessors();
@@ -14,6 +21,7 @@ class ParallelMult implements MatrixMultiplicator {
 	    numThreads = 32;
 	}
 	System.out.println("Algo 2: nThreads = " + numThreads);
+	scheduler = new TileScheduler(numThreads);
     }
 
     /**
@@ -24,40 +32,54 @@ class ParallelMult implements MatrixMultiplicator {
      */
     public double[][] mult(double[][] a, double[][] b) {
 	int n = a.length;
-	double[][] c = new double[n][n];
-	int startRow, stopRow, len;
-	Thread[] myThreads = new Thread[numThreads];
-
-	len = n/numThreads;
-	startRow = 0;
+	int m = b[0].length;
+	double[][] c = new double[n][m];
+	boolean byCols = m > n;
+	int lines = byCols ? m : n;
+	int size = scheduler.rowsPerTile(lines);
+	scheduler.run((lines + size - 1)/size, new Para(size, byCols, a, b, c));
+	return c;
+    } // end mult
 
-	Thread t;
-	int i;
-	// Start all threads but the last.
-	for (i = 0; i < numThreads - 1; i++) {
-	    stopRow = startRow + len;
-	    t = new Thread(new Para(startRow, stopRow, a, b, c));
-	    t.start();
-	    myThreads[i] = t;
-	    startRow = stopRow;
+    /**
+     * Calculate c = alpha*op(a)*op(b) + beta*c.
+     * @param transA: Use a^T for op(a).
+     * @param transB: Use b^T for op(b).
+     * @param alpha: The factor of the product.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @param beta: The factor of c.
+     * @param c: The result matrix.
+     */
+    public void gemm(boolean transA, boolean transB, double alpha,
+		     double[][] a, double[][] b, double beta, double[][] c) {
+	Gemm.checkSizes(transA, transB, a, b, c);
+	GemmTile g = gemmTile;
+	scheduler.acquire();
+	try {
+	    g.transA = transA;
+	    g.transB = transB;
+	    g.alpha = alpha;
+	    g.beta = beta;
+	    g.a = a;
+	    g.b = b;
+	    g.c = c;
+	    g.byCols = c[0].length > c.length;
+	    int lines = g.byCols ? c[0].length : c.length;
+	    g.size = scheduler.rowsPerTile(lines);
+	    scheduler.run((lines + g.size - 1)/g.size, g);
+	} finally {
+	    g.a = g.b = g.c = null;
+	    scheduler.release();
 	}
+    } // end gemm
 
-	// Start the last thread.
-	t = new Thread(new Para(startRow, n, a, b, c));
-	t.start();
-	myThreads[i] = t;
-
-	// Wait for threads to finish.
-	for (i = 0; i < numThreads; i++) {
-	    try {
-		myThreads[i].join();
-	    } catch (InterruptedException e) {
-		System.out.println(e.toString());
-		System.exit(1);
-	    }
-	}	 
-	return c;
-    } // end mult
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
 
     /**
      * Return a string identifying the algorithm.
@@ -66,27 +88,38 @@ class ParallelMult implements MatrixMultiplicator {
 	return "parMult";
     }
 
-    /* Thread class */
-    class Para implements Runnable {
-	int startRow, stopRow;
+    /* Tile class: a tile is 'size' consecutive rows or columns of c. */
+    class Para implements TileKernel {
+	int size;
+	boolean byCols;
 	double[][] a, b; // The matrices to be multiplied.
 	double[][] c;      // The result matrix.
-	int n;
+	int n, l, m;
 
-	Para(int startRow, int stopRow, double[][] a, double[][] b, double[][] c) {
-	    this.startRow = startRow;
-	    this.stopRow = stopRow;
+	Para(int size, boolean byCols, double[][] a, double[][] b, double[][] c) {
+	    this.size = size;
+	    this.byCols = byCols;
 	    this.a = a;
 	    this.b = b;
 	    this.c = c;
 	    n = a.length;
+	    l = b.length;
+	    m = b[0].length;
 	}
 
-	public void run() {
+	public void compute(int tile, int worker) {
+	    int startRow = 0, stopRow = n, startCol = 0, stopCol = m;
+	    if (byCols) {
+		startCol = tile*size;
+		stopCol = Math.min(startCol + size, m);
+	    } else {
+		startRow = tile*size;
+		stopRow = Math.min(startRow + size, n);
+	    }
 	    for (int i = startRow; i < stopRow; i++) {
-		for (int j = 0; j < n; j++) {
+		for (int j = startCol; j < stopCol; j++) {
 		    double tmp = 0.0;
-		    for (int k = 0; k < n; k++) {
+		    for (int k = 0; k < l; k++) {
 			tmp += a[i][k]*b[k][j];
 		    }
 		    c[i][j] = tmp;
@@ -94,4 +127,57 @@ class ParallelMult implements MatrixMultiplicator {
 	    }
 	}
     } // end inner class Para
+
+    /* Tile class for gemm, with tiles as in Para. */
+    class GemmTile implements TileKernel {
+	int size;
+	boolean byCols;
+	boolean transA, transB;
+	double alpha, beta;
+	double[][] a, b, c;
+
+	public void compute(int tile, int worker) {
+	    int n = c.length, m = c[0].length;
+	    int l = transA ? a.length : a[0].length;
+	    int startRow = 0, stopRow = n, startCol = 0, stopCol = m;
+	    if (byCols) {
+		startCol = tile*size;
+		stopCol = Math.min(startCol + size, m);
+	    } else {
+		startRow = tile*size;
+		stopRow = Math.min(startRow + size, n);
+	    }
+	    for (int i = startRow; i < stopRow; i++) {
+		double[] cRow = c[i];
+		Gemm.scaleRow(cRow, startCol, stopCol, beta);
+		if (!transB) {
+		    // Add alpha*op(a)[i][k] times row k of b.
+		    for (int k = 0; k < l; k++) {
+			double aik = alpha*(transA ? a[k][i] : a[i][k]);
+			double[] bRow = b[k];
+			for (int j = startCol; j < stopCol; j++) {
+			    cRow[j] += aik*bRow[j];
+			}
+		    }
+		} else {
+		    // Column j of op(b) is row j of b.
+		    for (int j = startCol; j < stopCol; j++) {
+			double[] bRow = b[j];
+			double tmp = 0.0;
+			if (transA) {
+			    for (int k = 0; k < l; k++) {
+				tmp += a[k][i]*bRow[k];
+			    }
+			} else {
+			    double[] aRow = a[i];
+			    for (int k = 0; k < l; k++) {
+				tmp += aRow[k]*bRow[k];
+			    }
+			}
+			cRow[j] += alpha*tmp;
+		    }
+		}
+	    }
+	} // end compute
+    } // end inner class GemmTile
 } // end class ParallelMult
@@ -2,10 +2,23 @@ import java.util.concurrent.*;
 
 /**
  * Implements a parallel algorithm for matrix multiplication with 
- * transposition.
+ * transposition. b is transposed into a packed copy by a Transposer
+ * on the same scheduler, so the input is left unchanged. c is split
+ * into tiles of whole rows, or of whole columns if c has more columns
+ * than rows, which the threads of a TileScheduler claim one at a time.
+ * gemm packs op(a) and op(b)^T into buffers that are kept between
+ * calls, when they are not rows of a and b already, so that every
+ * element of c is a dot product of two contiguous rows. After the
+ * first call of a size it allocates nothing.
  */
-class ParallelMultTransposed implements MatrixMultiplicator {
+class ParallelMultTransposed implements MatrixMultiplicator, Gemm,
+					AutoCloseable {
     int numThreads;
+    TileScheduler scheduler;
+    Transposer transposer;
+    Matrix aBuf = new Matrix(0, 0);  // op(a) when transA.
+    Matrix bBuf = new Matrix(0, 0);  // op(b)^T when not transB.
+    GemmTile gemmTile = new GemmTile();
 
     ParallelMultTransposed() {
 	numThreads = Runtime.getRuntime().availableProcessors();
@@ -15,6 +28,8 @@ class ParallelMultTransposed implements MatrixMultiplicator {
 	    numThreads = 32;
 	}
 	System.out.println("Algo 2: nThreads = " + numThreads);
+	scheduler = new TileScheduler(numThreads);
+	transposer = new Transposer(scheduler);
     }
 
     public static void main(String[] args) {
@@ -28,14 +43,10 @@ class ParallelMultTransposed implements MatrixMultiplicator {
 	    {7, 8, 9}
 	};
 
-	p.transpose(a);
+	Matrix at = p.transposer.transpose(a);
 	System.out.println("Matrix after transposing.");
-	for (int i = 0; i < a.length; i++) {
-	    for (int j = 0; j < a.length; j++) {
-		System.out.print(a[i][j] + " ");
-	    }
-	    System.out.println();
-	}
+	System.out.print(at);
+	p.close();
     } // end main
 
     /**
@@ -46,44 +57,87 @@ class ParallelMultTransposed implements MatrixMultiplicator {
      */
     public double[][] mult(double[][] a, double[][] b) {
 	int n = a.length;
-	double[][] c = new double[n][n];
-	int startRow, stopRow, len;
-	Thread[] myThreads = new Thread[numThreads];
+	int m = b[0].length;
+	double[][] c = new double[n][m];
 
 	// Transpose the b matrix.
-	transpose(b);
-
-	len = n/numThreads;
-	startRow = 0;
-
-	Thread t;
-	int i;
-	// Start all threads but the last.
-	for (i = 0; i < numThreads - 1; i++) {
-	    stopRow = startRow + len;
-	    t = new Thread(new Para(startRow, stopRow, a, b, c));
-	    t.start();
-	    myThreads[i] = t;
-	    startRow = stopRow;
-	}
+	Matrix bt = transposer.transpose(b);
 
-	// Start the last thread.
-	t = new Thread(new Para(startRow, n, a, b, c));
-	t.start();
-	myThreads[i] = t;
-
-	// Wait for threads to finish.
-	for (i = 0; i < numThreads; i++) {
-	    try {
-		myThreads[i].join();
-	    } catch (InterruptedException e) {
-		System.out.println(e.toString());
-		System.exit(1);
-	    }
-	}	 
+	boolean byCols = m > n;
+	int lines = byCols ? m : n;
+	int size = scheduler.rowsPerTile(lines);
+	scheduler.run((lines + size - 1)/size, new Para(size, byCols, a, bt, c));
 	return c;
     } // end mult
 
+    /**
+     * Calculate c = alpha*op(a)*op(b) + beta*c.
+     * @param transA: Use a^T for op(a).
+     * @param transB: Use b^T for op(b).
+     * @param alpha: The factor of the product.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @param beta: The factor of c.
+     * @param c: The result matrix.
+     */
+    public void gemm(boolean transA, boolean transB, double alpha,
+		     double[][] a, double[][] b, double beta, double[][] c) {
+	Gemm.checkSizes(transA, transB, a, b, c);
+	int n = c.length;
+	GemmTile g = gemmTile;
+	scheduler.acquire();
+	try {
+	    g.aRows = null;
+	    g.bRows = null;
+	    if (transA) {
+		aBuf = transpose(a, aBuf);
+	    } else {
+		g.aRows = a;
+	    }
+	    if (transB) {
+		g.bRows = b;
+	    } else {
+		bBuf = transpose(b, bBuf);
+	    }
+	    g.alpha = alpha;
+	    g.beta = beta;
+	    g.c = c;
+	    g.byCols = c[0].length > n;
+	    int lines = g.byCols ? c[0].length : n;
+	    g.size = scheduler.rowsPerTile(lines);
+	    scheduler.run((lines + g.size - 1)/g.size, g);
+	} finally {
+	    g.aRows = g.bRows = g.c = null;
+	    scheduler.release();
+	}
+    } // end gemm
+
+    /**
+     * Transpose a matrix into a buffer with the scheduler's threads.
+     * @param x: The matrix.
+     * @param buf: The buffer. It is replaced if it is too small.
+     * @return: The buffer holding x^T.
+     */
+    Matrix transpose(double[][] x, Matrix buf) {
+	int rows = x[0].length, cols = x.length;
+	if (buf.data.length < rows*cols) {
+	    buf = new Matrix(rows, cols);
+	} else {
+	    buf.rows = rows;
+	    buf.cols = cols;
+	    buf.stride = cols;
+	}
+	transposer.transpose(x, null, buf);
+	return buf;
+    } // end transpose
+
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
+
     /**
      * Return a string identifying the algorithm.
      */   
@@ -91,28 +145,43 @@ class ParallelMultTransposed implements MatrixMultiplicator {
 	return "parMultTransposed";
     }
 
-    /* Thread class */
-    class Para implements Runnable {
-	int startRow, stopRow;
-	double[][] a, b; // The matrices to be multiplied.
+    /* Tile class: a tile is 'size' consecutive rows or columns of c. */
+    class Para implements TileKernel {
+	int size;
+	boolean byCols;
+	double[][] a;      // The 1st matrix to be multiplied.
+	Matrix bt;         // The 2nd matrix, transposed.
 	double[][] c;      // The result matrix.
-	int n;
+	int n, l, m;
 
-	Para(int startRow, int stopRow, double[][] a, double[][] b, double[][] c) {
-	    this.startRow = startRow;
-	    this.stopRow = stopRow;
+	Para(int size, boolean byCols, double[][] a, Matrix bt, double[][] c) {
+	    this.size = size;
+	    this.byCols = byCols;
 	    this.a = a;
-	    this.b = b;
+	    this.bt = bt;
 	    this.c = c;
 	    n = a.length;
+	    l = bt.cols;
+	    m = bt.rows;
 	}
 
-	public void run() {
+	public void compute(int tile, int worker) {
+	    int startRow = 0, stopRow = n, startCol = 0, stopCol = m;
+	    if (byCols) {
+		startCol = tile*size;
+		stopCol = Math.min(startCol + size, m);
+	    } else {
+		startRow = tile*size;
+		stopRow = Math.min(startRow + size, n);
+	    }
+	    double[] bd = bt.data;
 	    for (int i = startRow; i < stopRow; i++) {
-		for (int j = 0; j < n; j++) {
+		double[] aRow = a[i];
+		for (int j = startCol; j < stopCol; j++) {
+		    int bRow = j*bt.stride;
 		    double tmp = 0.0;
-		    for (int k = 0; k < n; k++) {
-			tmp += a[i][k]*b[j][k];
+		    for (int k = 0; k < l; k++) {
+			tmp += aRow[k]*bd[bRow + k];
 		    }
 		    c[i][j] = tmp;
 		}
@@ -120,18 +189,40 @@ class ParallelMultTransposed implements MatrixMultiplicator {
 	}
     } // end inner class Para
 
-    /**
-     * Transpose a matrix.
-     */
-    void transpose(double[][] b) {
-	int n = b.length;
-	double tmp;
-	for (int i = 0; i < n; i++) {
-	    for (int j = 0; j < i; j++) {
-		tmp = b[i][j];
-		b[i][j] = b[j][i];
-		b[j][i] = tmp;
+    /* Tile class for gemm, with tiles as in Para. */
+    class GemmTile implements TileKernel {
+	int size;
+	boolean byCols;
+	double alpha, beta;
+	double[][] aRows;  // Rows of op(a), or null if in aBuf.
+	double[][] bRows;  // Rows of op(b)^T, or null if in bBuf.
+	double[][] c;
+
+	public void compute(int tile, int worker) {
+	    int n = c.length, m = c[0].length;
+	    int l = (aRows != null) ? aRows[0].length : aBuf.cols;
+	    int startRow = 0, stopRow = n, startCol = 0, stopCol = m;
+	    if (byCols) {
+		startCol = tile*size;
+		stopCol = Math.min(startCol + size, m);
+	    } else {
+		startRow = tile*size;
+		stopRow = Math.min(startRow + size, n);
 	    }
-	}
-    } // end transpose
+	    for (int i = startRow; i < stopRow; i++) {
+		double[] x = (aRows != null) ? aRows[i] : aBuf.data;
+		int xOff = (aRows != null) ? 0 : i*aBuf.stride;
+		double[] cRow = c[i];
+		for (int j = startCol; j < stopCol; j++) {
+		    double[] y = (bRows != null) ? bRows[j] : bBuf.data;
+		    int yOff = (bRows != null) ? 0 : j*bBuf.stride;
+		    double tmp = 0.0;
+		    for (int k = 0; k < l; k++) {
+			tmp += x[xOff + k]*y[yOff + k];
+		    }
+		    cRow[j] = (beta == 0.0) ? alpha*tmp : alpha*tmp + beta*cRow[j];
+		}
+	    }
+	} // end compute
+    } // end inner class GemmTile
 } // end class ParallelMultTransposed
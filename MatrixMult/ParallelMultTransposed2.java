@@ -1,14 +1,16 @@
-import java.util.concurrent.*;
-
 /**
  * Implement a parallel algorithm for matrix multiplication where
  * both the multiplication and the transposition is performed in
- * parallel.
+ * parallel. The threads of a TileScheduler first write the bands of
+ * a packed copy of b^T with a Transposer, so the input is left
+ * unchanged, and then claim tiles of whole rows of c, or of whole
+ * columns if c has more columns than rows, one at a time.
  * PS: Currently not part of the scope of the master thesis.
  */
-class ParallelMultTransposed2 implements MatrixMultiplicator {
+class ParallelMultTransposed2 implements MatrixMultiplicator, AutoCloseable {
     int numThreads;
-    CyclicBarrier synchBar;
+    TileScheduler scheduler;
+    Transposer transposer;
 
     ParallelMultTransposed2() {
 	numThreads = Runtime.getRuntime().availableProcessors();
@@ -17,7 +19,8 @@ class ParallelMultTransposed2 implements MatrixMultiplicator {
 	    // is using hyperthreading with 2 logical cores per physical core).
 	    numThreads = 32;
 	}	
-	synchBar = new CyclicBarrier(numThreads);
+	scheduler = new TileScheduler(numThreads);
+	transposer = new Transposer(scheduler);
     }
 
     /**
@@ -28,41 +31,26 @@ class ParallelMultTransposed2 implements MatrixMultiplicator {
      */
     public double[][] mult(double[][] a, double[][] b) {
 	int n = a.length;
-	double[][] c = new double[n][n];
-	int startRow, stopRow, len;
-	Thread[] myThreads = new Thread[numThreads];
-
-	len = n/numThreads;
-	startRow = 0;
-
-	Thread t;
-	int i;
-	// Start all threads but the last.
-	for (i = 0; i < numThreads - 1; i++) {
-	    stopRow = startRow + len;
-	    t = new Thread(new Para(i, startRow, stopRow, a, b, c));
-	    t.start();
-	    myThreads[i] = t;
-	    startRow = stopRow;
-	}
+	int l = b.length;
+	int m = b[0].length;
+	double[][] c = new double[n][m];
+	Matrix bt = new Matrix(m, l);
+	transposer.transpose(b, null, bt);
 
-	// Start the last thread.
-	t = new Thread(new Para(i, startRow, n, a, b, c));
-	t.start();
-	myThreads[i] = t;
-
-	// Wait for threads to finish.
-	for (i = 0; i < numThreads; i++) {
-	    try {
-		myThreads[i].join();
-	    } catch (InterruptedException e) {
-		System.out.println(e.toString());
-		System.exit(1);
-	    }
-	}	 
+	boolean byCols = m > n;
+	int lines = byCols ? m : n;
+	int size = scheduler.rowsPerTile(lines);
+	scheduler.run((lines + size - 1)/size, new Para(size, byCols, a, bt, c));
 	return c;
     } // end mult
 
+    /**
+     * Stop the worker threads of the scheduler.
+     */
+    public void close() {
+	scheduler.close();
+    } // end close
+
     /**
      * Return a string identifying the algorithm.
      */
@@ -70,58 +58,47 @@ class ParallelMultTransposed2 implements MatrixMultiplicator {
 	return "parMultTransposed2";
     }
 
-    /* Thread class */
-    class Para implements Runnable {
-	int id;
-	int startRow, stopRow;
-	double[][] a, b;   // The matrices to be multiplied.
+    /* Tile class: a tile is 'size' consecutive rows or columns of c. */
+    class Para implements TileKernel {
+	int size;
+	boolean byCols;
+	double[][] a;      // The 1st matrix to be multiplied.
+	Matrix bt;         // The 2nd matrix, transposed.
 	double[][] c;      // The result matrix.
-	int n;
+	int n, l, m;
 
-	Para(int id, int startRow, int stopRow, double[][] a, double[][] b, double[][] c) {
-	    this.id = id;
-	    this.startRow = startRow;
-	    this.stopRow = stopRow;
+	Para(int size, boolean byCols, double[][] a, Matrix bt, double[][] c) {
+	    this.size = size;
+	    this.byCols = byCols;
 	    this.a = a;
-	    this.b = b;
+	    this.bt = bt;
 	    this.c = c;
 	    n = a.length;
+	    l = bt.cols;
+	    m = bt.rows;
 	}
 
-	public void run() {
-	    // Transpose the b matrix.
-	    double tmp;
-	    for (int i = startRow; i < stopRow; i++) {
-		for (int j = 0; j < i; j++) {
-		    tmp = b[i][j];
-		    b[i][j] = b[j][i];
-		    b[j][i] = tmp;
-		}
+	public void compute(int tile, int worker) {
+	    int startRow = 0, stopRow = n, startCol = 0, stopCol = m;
+	    if (byCols) {
+		startCol = tile*size;
+		stopCol = Math.min(startCol + size, m);
+	    } else {
+		startRow = tile*size;
+		stopRow = Math.min(startRow + size, n);
 	    }
-	    synch();
-
-	    // Multiply a and b.	    
+	    double[] bd = bt.data;
 	    for (int i = startRow; i < stopRow; i++) {
-		for (int j = 0; j < n; j++) {
-		    tmp = 0.0;
-		    for (int k = 0; k < n; k++) {
-			tmp += a[i][k]*b[j][k];
+		double[] aRow = a[i];
+		for (int j = startCol; j < stopCol; j++) {
+		    int bRow = j*bt.stride;
+		    double tmp = 0.0;
+		    for (int k = 0; k < l; k++) {
+			tmp += aRow[k]*bd[bRow + k];
 		    }
 		    c[i][j] = tmp;
 		}
 	    }
-	} // end run
-
-	void synch() {
-	    try {
-		synchBar.await();
-	    } catch (InterruptedException ie) {
-		System.out.println(ie.toString());
-		System.exit(1);
-	    } catch (BrokenBarrierException be) {
-		System.out.println(be.toString());
-		System.exit(1);
-	    }
 	}
     } // end inner class Para
-} // end class ParallelMultTransposed
+} // end class ParallelMultTransposed2
@@ -11,15 +11,17 @@ class SequentialMult implements MatrixMultiplicator {
      */
     public double[][] mult(double[][] a, double[][] b) {
 	double[][] c;
-	int n;
+	int n, l, m;
 
 	n = a.length;
-	c = new double[n][n];
+	l = b.length;
+	m = b[0].length;
+	c = new double[n][m];
 
 	for (int i = 0; i < n; i++) {
-	    for (int j = 0; j < n; j++) {
+	    for (int j = 0; j < m; j++) {
 		double tmp = 0.0;
-		for (int k = 0; k < n; k++) {
+		for (int k = 0; k < l; k++) {
 		    tmp += a[i][k]*b[k][j];
 		}
 		c[i][j] = tmp;
@@ -0,0 +1,429 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.*;
+import jdk.incubator.vector.*;
+
+/**
+ * Implements Strassen's algorithm for matrix multiplication on a
+ * fork/join pool. An s x s product is split into 2x2 blocks, and
+ * computed from seven products of s/2 x s/2 blocks instead of eight:
+ *   M1 = (A11 + A22)(B11 + B22)   M5 = (A11 + A12)B22
+ *   M2 = (A21 + A22)B11           M6 = (A21 - A11)(B11 + B12)
+ *   M3 = A11(B12 - B22)           M7 = (A12 - A22)(B21 + B22)
+ *   M4 = A22(B21 - B11)
+ *   C11 = M1 + M4 - M5 + M7       C12 = M3 + M5
+ *   C21 = M2 + M4                 C22 = M1 - M2 + M3 + M6
+ * The seven products are forked as tasks, and each task forms its
+ * own sums, so the additions run in parallel too. Blocks of at most
+ * 'cutoff' rows are multiplied by the classical algorithm.
+ * The input is copied into the flat layout, and split into blocks
+ * of size s = q*2^d, where q <= cutoff, padded with zeros, so any
+ * n x l and l x m matrices can be multiplied. s is taken from the
+ * smallest dimension, so a tall or wide product is not padded to a
+ * square of its largest dimension, and each s x s block of c is a
+ * task that sums Strassen products along l. The temporary blocks are
+ * taken from a pool of buffers that is kept between calls.
+ * NB: Compile and run with --add-modules jdk.incubator.vector.
+ */
+class StrassenMult implements MatrixMultiplicator, AutoCloseable {
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    static final int[] CUTOFFS = {64, 128, 256, 512};
+    static final int TUNE_SIZE = 1024;  // Size of the tuning matrices.
+    static final int TUNE_TESTS = 3;
+    ForkJoinPool pool;
+    BufferPool buffers = new BufferPool();
+    int cutoff;
+
+    StrassenMult() {
+	this(128);
+    }
+
+    /**
+     * @param cutoff: The largest block size multiplied classically.
+     */
+    StrassenMult(int cutoff) {
+	int numThreads = Runtime.getRuntime().availableProcessors();
+	if (numThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    numThreads = 32;
+	}
+	System.out.println("Strassen: nThreads = " + numThreads);
+	pool = new ForkJoinPool(numThreads);
+	this.cutoff = cutoff;
+    }
+
+    /**
+     * Calculate the product of two matrices a and b.
+     * @param a: 1st input matrix.
+     * @param b: 2nd input matrix.
+     * @return: the result matrix.
+     */
+    public double[][] mult(double[][] a, double[][] b) {
+	int n = a.length;
+	int l = b.length;
+	int m = (l == 0) ? 0 : b[0].length;
+
+	// Multiply in s x s blocks, s = q*2^d, with each dimension padded
+	// to a multiple of s. Take s from the smallest dimension, unless
+	// padding all three to one block pads less.
+	int s = paddedSize(Math.min(n, Math.min(l, m)));
+	int big = paddedSize(Math.max(n, Math.max(l, m)));
+	if ((double) big*big*big <= (double) roundUp(n, s)*roundUp(l, s)*roundUp(m, s)) {
+	    s = big;
+	}
+	Matrix pa = pad(a, roundUp(n, s), roundUp(l, s));
+	Matrix pb = pad(b, roundUp(l, s), roundUp(m, s));
+	Matrix pc = buffers.take(pa.rows, pb.cols);
+	int blocksN = pa.rows/s, blocksL = pa.cols/s, blocksM = pb.cols/s;
+	BlockTask[] tasks = new BlockTask[blocksN*blocksM];
+	for (int bi = 0; bi < blocksN; bi++) {
+	    for (int bj = 0; bj < blocksM; bj++) {
+		tasks[bi*blocksM + bj] = new BlockTask(pa, pb, pc, s, bi, bj, blocksL);
+	    }
+	}
+	pool.invoke(new ForkAll(tasks));
+
+	double[][] c = new double[n][m];
+	for (int i = 0; i < n; i++) {
+	    System.arraycopy(pc.data, i*pc.stride, c[i], 0, m);
+	}
+	buffers.give(pa);
+	buffers.give(pb);
+	buffers.give(pc);
+	return c;
+    } // end mult
+
+    /**
+     * Return the smallest size q*2^d >= n with q <= cutoff.
+     */
+    int paddedSize(int n) {
+	int size = Math.max(n, 1);
+	int levels = 0;
+	while (size > cutoff) {
+	    size = (size + 1)/2;
+	    levels++;
+	}
+	return size << levels;
+    } // end paddedSize
+
+    /**
+     * Return the smallest multiple of s >= n, and at least s.
+     */
+    static int roundUp(int n, int s) {
+	return Math.max(1, (n + s - 1)/s)*s;
+    } // end roundUp
+
+    /**
+     * Copy a matrix into a pooled rows x cols matrix, padded with zeros.
+     */
+    Matrix pad(double[][] a, int rows, int cols) {
+	Matrix p = buffers.take(rows, cols);
+	int n = a.length;
+	int l = (n == 0) ? 0 : a[0].length;
+	for (int i = 0; i < n; i++) {
+	    System.arraycopy(a[i], 0, p.data, i*cols, l);
+	    Arrays.fill(p.data, i*cols + l, (i + 1)*cols, 0.0);
+	}
+	Arrays.fill(p.data, n*cols, rows*cols, 0.0);
+	return p;
+    } // end pad
+
+    /**
+     * Measure the cutoffs in CUTOFFS on two random TUNE_SIZE x
+     * TUNE_SIZE matrices, and keep the fastest.
+     */
+    void autotune() {
+	double[][] a = new double[TUNE_SIZE][TUNE_SIZE];
+	double[][] b = new double[TUNE_SIZE][TUNE_SIZE];
+	Random rand = new Random(1234);
+	for (int i = 0; i < TUNE_SIZE; i++) {
+	    for (int j = 0; j < TUNE_SIZE; j++) {
+		a[i][j] = rand.nextDouble();
+		b[i][j] = rand.nextDouble();
+	    }
+	}
+
+	// Warm up the JIT.
+	mult(a, b);
+
+	double bestTime = Double.MAX_VALUE;
+	int best = cutoff;
+	double[] times = new double[TUNE_TESTS];
+	for (int q : CUTOFFS) {
+	    cutoff = q;
+	    for (int t = 0; t < TUNE_TESTS; t++) {
+		long startTime = System.nanoTime();
+		mult(a, b);
+		times[t] = (System.nanoTime() - startTime)/1e9;
+	    }
+	    Arrays.sort(times);
+	    if (times[TUNE_TESTS/2] < bestTime) {
+		bestTime = times[TUNE_TESTS/2];
+		best = q;
+	    }
+	}
+	cutoff = best;
+	System.out.println("Strassen: cutoff = " + cutoff);
+    } // end autotune
+
+    /**
+     * Shut down the fork/join pool.
+     */
+    public void close() {
+	pool.shutdown();
+    } // end close
+
+    /**
+     * Return a string identifying the algorithm.
+     */
+    public String toString() {
+	return "strassenMult";
+    }
+
+    /**
+     * Calculate c = a*b by the classical algorithm. The loops are in
+     * i, k, j order, so the inner loop has unit stride in b and c.
+     * The inner loop uses the Vector API, since the JIT does not
+     * vectorize it when b and c may be views of the same array.
+     */
+    static void classic(Matrix a, Matrix b, Matrix c) {
+	int s = a.rows;
+	double[] ad = a.data, bd = b.data, cd = c.data;
+	for (int i = 0; i < s; i++) {
+	    int cRow = c.offset + i*c.stride;
+	    int aRow = a.offset + i*a.stride;
+	    Arrays.fill(cd, cRow, cRow + s, 0.0);
+	    for (int k = 0; k < s; k++) {
+		double aik = ad[aRow + k];
+		int bRow = b.offset + k*b.stride;
+		DoubleVector av = DoubleVector.broadcast(SPECIES, aik);
+		int j = 0;
+		for (; j < SPECIES.loopBound(s); j += SPECIES.length()) {
+		    DoubleVector.fromArray(SPECIES, bd, bRow + j)
+			.fma(av, DoubleVector.fromArray(SPECIES, cd, cRow + j))
+			.intoArray(cd, cRow + j);
+		}
+		for (; j < s; j++) {
+		    cd[cRow + j] += aik*bd[bRow + j];
+		}
+	    }
+	}
+    } // end classic
+
+    /**
+     * Calculate z = x + sign*y.
+     */
+    static void add(Matrix x, Matrix y, double sign, Matrix z) {
+	int s = x.rows;
+	for (int i = 0; i < s; i++) {
+	    int xRow = x.offset + i*x.stride;
+	    int yRow = y.offset + i*y.stride;
+	    int zRow = z.offset + i*z.stride;
+	    for (int j = 0; j < s; j++) {
+		z.data[zRow + j] = x.data[xRow + j] + sign*y.data[yRow + j];
+	    }
+	}
+    } // end add
+
+    /* Task running the block tasks in parallel. */
+    static class ForkAll extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	RecursiveAction[] tasks;
+
+	ForkAll(RecursiveAction[] tasks) {
+	    this.tasks = tasks;
+	}
+
+	protected void compute() {
+	    invokeAll(tasks);
+	}
+    } // end class ForkAll
+
+    /* Task computing block (bi, bj) of c as a sum of s x s products. */
+    @SuppressWarnings("serial") // Never serialized; holds Matrix fields.
+    class BlockTask extends RecursiveAction {
+	Matrix a, b, c;
+	int s, bi, bj, blocksL;
+
+	BlockTask(Matrix a, Matrix b, Matrix c, int s, int bi, int bj, int blocksL) {
+	    this.a = a;
+	    this.b = b;
+	    this.c = c;
+	    this.s = s;
+	    this.bi = bi;
+	    this.bj = bj;
+	    this.blocksL = blocksL;
+	}
+
+	protected void compute() {
+	    Matrix cBlock = c.view(bi*s, bj*s, s, s);
+	    new MultTask(a.view(bi*s, 0, s, s), b.view(0, bj*s, s, s), cBlock).compute();
+	    if (blocksL == 1) {
+		return;
+	    }
+	    Matrix t = buffers.take(s);
+	    for (int bk = 1; bk < blocksL; bk++) {
+		new MultTask(a.view(bi*s, bk*s, s, s), b.view(bk*s, bj*s, s, s), t).compute();
+		add(cBlock, t, 1, cBlock);
+	    }
+	    buffers.give(t);
+	} // end compute
+    } // end inner class BlockTask
+
+    /* Task computing c = a*b for s x s matrices, s = q*2^d. */
+    @SuppressWarnings("serial") // Never serialized; holds Matrix fields.
+    class MultTask extends RecursiveAction {
+	Matrix a, b, c;
+
+	MultTask(Matrix a, Matrix b, Matrix c) {
+	    this.a = a;
+	    this.b = b;
+	    this.c = c;
+	}
+
+	protected void compute() {
+	    int s = a.rows;
+	    if (s <= cutoff) {
+		classic(a, b, c);
+		return;
+	    }
+	    int h = s/2;
+	    Matrix[] m = new Matrix[7];
+	    ProductTask[] tasks = new ProductTask[7];
+	    for (int i = 0; i < 7; i++) {
+		m[i] = buffers.take(h);
+		tasks[i] = new ProductTask(i, a, b, m[i]);
+	    }
+	    invokeAll(tasks);
+
+	    // Combine the products into the blocks of c.
+	    Matrix c11 = c.view(0, 0, h, h), c12 = c.view(0, h, h, h);
+	    Matrix c21 = c.view(h, 0, h, h), c22 = c.view(h, h, h, h);
+	    for (int i = 0; i < h; i++) {
+		int mRow = i*h;
+		for (int j = 0; j < h; j++) {
+		    double m1 = m[0].data[mRow + j], m2 = m[1].data[mRow + j];
+		    double m3 = m[2].data[mRow + j], m4 = m[3].data[mRow + j];
+		    double m5 = m[4].data[mRow + j], m6 = m[5].data[mRow + j];
+		    double m7 = m[6].data[mRow + j];
+		    c11.data[c11.offset + i*c11.stride + j] = m1 + m4 - m5 + m7;
+		    c12.data[c12.offset + i*c12.stride + j] = m3 + m5;
+		    c21.data[c21.offset + i*c21.stride + j] = m2 + m4;
+		    c22.data[c22.offset + i*c22.stride + j] = m1 - m2 + m3 + m6;
+		}
+	    }
+	    for (int i = 0; i < 7; i++) {
+		buffers.give(m[i]);
+	    }
+	} // end compute
+    } // end inner class MultTask
+
+    /* Task computing one of the seven products M1, ..., M7. */
+    @SuppressWarnings("serial") // Never serialized; holds Matrix fields.
+    class ProductTask extends RecursiveAction {
+	int which;   // 0 for M1, ..., 6 for M7.
+	Matrix a, b; // The s x s matrices.
+	Matrix m;    // The s/2 x s/2 product.
+
+	ProductTask(int which, Matrix a, Matrix b, Matrix m) {
+	    this.which = which;
+	    this.a = a;
+	    this.b = b;
+	    this.m = m;
+	}
+
+	protected void compute() {
+	    int h = m.rows;
+	    Matrix a11 = a.view(0, 0, h, h), a12 = a.view(0, h, h, h);
+	    Matrix a21 = a.view(h, 0, h, h), a22 = a.view(h, h, h, h);
+	    Matrix b11 = b.view(0, 0, h, h), b12 = b.view(0, h, h, h);
+	    Matrix b21 = b.view(h, 0, h, h), b22 = b.view(h, h, h, h);
+	    Matrix x = null, y = null; // Pooled sums, if any.
+
+	    switch (which) {
+	    case 0:
+		x = buffers.take(h);
+		y = buffers.take(h);
+		add(a11, a22, 1, x);
+		add(b11, b22, 1, y);
+		new MultTask(x, y, m).compute();
+		break;
+	    case 1:
+		x = buffers.take(h);
+		add(a21, a22, 1, x);
+		new MultTask(x, b11, m).compute();
+		break;
+	    case 2:
+		y = buffers.take(h);
+		add(b12, b22, -1, y);
+		new MultTask(a11, y, m).compute();
+		break;
+	    case 3:
+		y = buffers.take(h);
+		add(b21, b11, -1, y);
+		new MultTask(a22, y, m).compute();
+		break;
+	    case 4:
+		x = buffers.take(h);
+		add(a11, a12, 1, x);
+		new MultTask(x, b22, m).compute();
+		break;
+	    case 5:
+		x = buffers.take(h);
+		y = buffers.take(h);
+		add(a21, a11, -1, x);
+		add(b11, b12, 1, y);
+		new MultTask(x, y, m).compute();
+		break;
+	    default:
+		x = buffers.take(h);
+		y = buffers.take(h);
+		add(a12, a22, -1, x);
+		add(b21, b22, 1, y);
+		new MultTask(x, y, m).compute();
+	    }
+	    if (x != null) {
+		buffers.give(x);
+	    }
+	    if (y != null) {
+		buffers.give(y);
+	    }
+	} // end compute
+    } // end inner class ProductTask
+
+    /**
+     * A thread-safe pool of packed matrices, one free list per nr of
+     * elements. Taken matrices are not cleared.
+     */
+    static class BufferPool {
+	ConcurrentHashMap<Integer, ConcurrentLinkedQueue<double[]>> free =
+	    new ConcurrentHashMap<>();
+
+	/**
+	 * Return an s x s matrix from the pool, or a new one.
+	 */
+	Matrix take(int s) {
+	    return take(s, s);
+	} // end take
+
+	/**
+	 * Return a rows x cols matrix from the pool, or a new one.
+	 */
+	Matrix take(int rows, int cols) {
+	    double[] data = free.computeIfAbsent(rows*cols,
+						 k -> new ConcurrentLinkedQueue<>()).poll();
+	    if (data == null) {
+		data = new double[rows*cols];
+	    }
+	    return new Matrix(rows, cols, cols, 0, data);
+	} // end take
+
+	/**
+	 * Return a matrix taken from the pool.
+	 */
+	void give(Matrix x) {
+	    free.get(x.data.length).offer(x.data);
+	} // end give
+    } // end class BufferPool
+} // end class StrassenMult
@@ -0,0 +1,11 @@
+/**
+ * An interface for the kernels run by a TileScheduler.
+ */
+interface TileKernel {
+    /**
+     * Compute one tile of the result.
+     * @param tile: The tile nr, 0 <= tile < nr of tiles.
+     * @param worker: The id of the calling worker thread.
+     */
+    public void compute(int tile, int worker);
+}
@@ -0,0 +1,279 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deals out the tiles of a result to a team of worker threads. The
+ * workers claim the next tile from an atomic counter until all tiles
+ * are taken, so a worker on a slow or busy core takes fewer tiles
+ * instead of holding up the others, as a fixed band of rows would.
+ * For each call the scheduler records the nr of tiles and the busy
+ * time of each worker, and getImbalance() tells how uneven the load
+ * was.
+ * The workers are daemon threads started by the first call, and the
+ * calling thread is worker 0. Between calls the workers are parked,
+ * and a call wakes them with LockSupport.unpark, so a call allocates
+ * nothing.
+ * The state of a call is kept in fields, so one thread at a time
+ * holds the scheduler. run() claims it for the call, and a caller
+ * that fills shared state for its kernels, such as a reused tile
+ * object, claims it with acquire() before writing that state and
+ * gives it back with release(). The holder can claim it again, e.g.
+ * by calling run() within acquire() and release(). Any other claim,
+ * and a call of run() from a kernel, throws IllegalStateException,
+ * so a concurrent call fails before it can touch the state of the
+ * call in progress.
+ * If a kernel throws, the remaining tiles are skipped, and run()
+ * rethrows the exception when all workers are done. The workers live
+ * until close() is called, so an owner of a scheduler must close it.
+ */
+class TileScheduler {
+    static final int TILES_PER_THREAD = 8;  // For rowsPerTile.
+    int numThreads;
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger pending = new AtomicInteger(); // Workers still busy.
+    AtomicBoolean claimed = new AtomicBoolean(); // Held by a thread.
+    volatile Thread owner;  // The thread holding the scheduler.
+    int holds;         // Nr of claims by the owner not yet released.
+    boolean inRun;     // run() is in progress.
+    int[] tilesDone;   // Tiles computed by each worker in the last call.
+    long[] busyTime;   // Busy time of each worker in ns in the last call.
+    Thread[] workers;  // Workers 1, ..., numThreads - 1.
+    Thread caller;     // The thread in the current call.
+    volatile int generation;  // Nr of calls so far.
+    volatile boolean closed;
+    volatile Throwable failure;  // Thrown by a kernel in the current call.
+    TileKernel kernel;
+    int nTiles;
+
+    TileScheduler() {
+	this(defaultThreads());
+    }
+
+    /**
+     * @param numThreads: Nr of worker threads per call.
+     */
+    TileScheduler(int numThreads) {
+	this.numThreads = numThreads;
+	tilesDone = new int[numThreads];
+	busyTime = new long[numThreads];
+    }
+
+    /**
+     * Return the nr of threads to use on this machine.
+     */
+    static int defaultThreads() {
+	int numThreads = Runtime.getRuntime().availableProcessors();
+	if (numThreads == 64) {
+	    // NB: Hardcode the nr of physical cores (this particular machine
+	    // is using hyperthreading with 2 logical cores per physical core).
+	    numThreads = 32;
+	}
+	return numThreads;
+    } // end defaultThreads
+
+    /**
+     * Return the nr of rows in a tile when n rows are split into
+     * about TILES_PER_THREAD tiles per thread. Used for columns too.
+     */
+    int rowsPerTile(int n) {
+	return Math.max(1, n/(numThreads*TILES_PER_THREAD));
+    } // end rowsPerTile
+
+    /**
+     * Compute tiles 0, ..., nTiles - 1 with the worker threads, and
+     * return when all are done.
+     * @param nTiles: Nr of tiles.
+     * @param kernel: Computes one tile.
+     */
+    void run(int nTiles, TileKernel kernel) {
+	acquire();
+	if (inRun) {
+	    // A kernel on the calling thread.
+	    release();
+	    throw new IllegalStateException("TileScheduler is already running");
+	}
+	inRun = true;
+	try {
+	    if (workers == null) {
+		startWorkers();
+	    }
+	    this.kernel = kernel;
+	    this.nTiles = nTiles;
+	    next.set(0);
+	    failure = null;
+	    pending.set(numThreads - 1);
+	    caller = Thread.currentThread();
+	    generation++;  // Publishes the fields above to the workers.
+	    for (Thread w : workers) {
+		LockSupport.unpark(w);
+	    }
+
+	    try {
+		work(0);
+	    } catch (Throwable e) {
+		fail(e);
+	    }
+	    while (pending.get() > 0) {
+		LockSupport.park(this);
+	    }
+	    this.kernel = null;
+	    Throwable e = failure;
+	    if (e != null) {
+		failure = null;
+		if (e instanceof RuntimeException) {
+		    throw (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+		    throw (Error) e;
+		}
+		throw new RuntimeException(e);
+	    }
+	} finally {
+	    inRun = false;
+	    release();
+	}
+    } // end run
+
+    /**
+     * Claim the scheduler for the calling thread. A thread that holds
+     * it can claim it again, and must release it once per claim.
+     * @throws IllegalStateException if the scheduler is closed or is
+     * held by another thread.
+     */
+    void acquire() {
+	if (closed) {
+	    throw new IllegalStateException("TileScheduler is closed");
+	}
+	Thread t = Thread.currentThread();
+	if (owner == t) {
+	    holds++;
+	    return;
+	}
+	if (!claimed.compareAndSet(false, true)) {
+	    throw new IllegalStateException("TileScheduler is already running");
+	}
+	owner = t;
+	holds = 1;
+    } // end acquire
+
+    /**
+     * Give back one claim of the scheduler by the calling thread.
+     */
+    void release() {
+	if (--holds == 0) {
+	    owner = null;
+	    claimed.set(false);
+	}
+    } // end release
+
+    /**
+     * Start the worker threads.
+     */
+    void startWorkers() {
+	workers = new Thread[numThreads - 1];
+	for (int i = 1; i < numThreads; i++) {
+	    Thread t = new Thread(new Worker(i));
+	    t.setDaemon(true);
+	    t.start();
+	    workers[i - 1] = t;
+	}
+    } // end startWorkers
+
+    /**
+     * Claim and compute tiles until all are taken.
+     * @param id: The worker id.
+     */
+    void work(int id) {
+	long startTime = System.nanoTime();
+	int tiles = 0;
+	int t;
+	while ((t = next.getAndIncrement()) < nTiles) {
+	    kernel.compute(t, id);
+	    tiles++;
+	}
+	tilesDone[id] = tiles;
+	busyTime[id] = System.nanoTime() - startTime;
+    } // end work
+
+    /**
+     * Record an exception thrown by a kernel, and let the workers
+     * skip the remaining tiles.
+     * @param e: The exception.
+     */
+    void fail(Throwable e) {
+	if (failure == null) {
+	    failure = e;
+	}
+	next.set(nTiles);
+    } // end fail
+
+    /**
+     * Stop the worker threads.
+     */
+    void close() {
+	closed = true;
+	if (workers != null) {
+	    for (Thread w : workers) {
+		LockSupport.unpark(w);
+	    }
+	}
+    } // end close
+
+    /**
+     * Return the largest busy time of a worker in the last call
+     * divided by the mean busy time. 1.0 means a perfect balance.
+     */
+    double getImbalance() {
+	long max = 0, sum = 0;
+	for (int i = 0; i < numThreads; i++) {
+	    max = Math.max(max, busyTime[i]);
+	    sum += busyTime[i];
+	}
+	return (sum == 0) ? 1.0 : (double) max*numThreads/sum;
+    } // end getImbalance
+
+    /**
+     * Print the tiles and busy time of each worker in the last call.
+     */
+    void printLoad() {
+	System.out.format("%-8s%-8s%-10s\n", "worker", "tiles", "busy (ms)");
+	for (int i = 0; i < numThreads; i++) {
+	    System.out.format("%7d|%-7d|%-10.3f\n", i, tilesDone[i],
+			      busyTime[i]/1000000.0);
+	}
+	System.out.format("Imbalance (max/mean busy time) = %.3f\n",
+			  getImbalance());
+    } // end printLoad
+
+    /* Thread class */
+    class Worker implements Runnable {
+	int id;
+
+	Worker(int id) {
+	    this.id = id;
+	}
+
+	public void run() {
+	    int seen = 0;
+	    while (true) {
+		while (generation == seen && !closed) {
+		    LockSupport.park(this);
+		}
+		if (closed) {
+		    return;
+		}
+		seen = generation;
+		try {
+		    work(id);
+		} catch (Throwable e) {
+		    fail(e);
+		} finally {
+		    if (pending.decrementAndGet() == 0) {
+			LockSupport.unpark(caller);
+		    }
+		}
+	    }
+	}
+    } // end inner class Worker
+} // end class TileScheduler
@@ -0,0 +1,155 @@
+/**
+ * Writes the transpose of a matrix into a packed Matrix, leaving the
+ * input unchanged. The columns of b are split into equal bands, about
+ * TileScheduler.TILES_PER_THREAD per thread, which the threads of a
+ * TileScheduler claim one at a time. A multiplier passes its own
+ * scheduler, so the transpose runs on the same parked workers as the
+ * product instead of starting threads for every call. A band is
+ * transposed by a cache-oblivious recursion: the block is halved
+ * along its longer side until it is at most LEAF x LEAF, so the rows
+ * read and the rows written by a leaf fit in the cache whatever its
+ * size is.
+ * A team of threads that is already running can call transposeBand
+ * from each thread instead of transpose.
+ */
+class Transposer implements AutoCloseable {
+    static final int LEAF = 16;
+    TileScheduler scheduler;
+    boolean ownScheduler;  // The scheduler was created by this transposer.
+    BandTile bandTile = new BandTile();
+
+    /**
+     * Transpose with a scheduler of its own.
+     */
+    Transposer() {
+	this(new TileScheduler());
+	ownScheduler = true;
+    }
+
+    /**
+     * @param scheduler: The scheduler to run the bands on.
+     */
+    Transposer(TileScheduler scheduler) {
+	this.scheduler = scheduler;
+    }
+
+    /**
+     * Return the transpose of a matrix as a packed Matrix.
+     * @param b: The matrix.
+     */
+    Matrix transpose(double[][] b) {
+	int rows = b.length;
+	int cols = (rows == 0) ? 0 : b[0].length;
+	Matrix bt = new Matrix(cols, rows);
+	transpose(b, null, bt);
+	return bt;
+    } // end transpose
+
+    /**
+     * Return the transpose of a matrix as a packed Matrix.
+     * @param b: The matrix.
+     */
+    Matrix transpose(Matrix b) {
+	Matrix bt = new Matrix(b.cols, b.rows);
+	transpose(null, b, bt);
+	return bt;
+    } // end transpose
+
+    /**
+     * Write the transpose of a matrix, given as b2 or b, into bt.
+     */
+    void transpose(double[][] b2, Matrix b, Matrix bt) {
+	BandTile t = bandTile;
+	scheduler.acquire();
+	try {
+	    t.b2 = b2;
+	    t.b = b;
+	    t.bt = bt;
+	    t.nBands = Math.max(1, Math.min(bt.rows, scheduler.numThreads*
+					    TileScheduler.TILES_PER_THREAD));
+	    scheduler.run(t.nBands, t);
+	} finally {
+	    t.b2 = null;
+	    t.b = null;
+	    t.bt = null;
+	    scheduler.release();
+	}
+    } // end transpose
+
+    /**
+     * Stop the worker threads of the scheduler, if it is the
+     * transposer's own.
+     */
+    public void close() {
+	if (ownScheduler) {
+	    scheduler.close();
+	}
+    } // end close
+
+    /* Tile class: a tile is a band of rows of bt. */
+    class BandTile implements TileKernel {
+	int nBands;
+	double[][] b2;
+	Matrix b, bt;
+
+	public void compute(int tile, int worker) {
+	    transposeBand(tile, nBands, b2, b, bt);
+	}
+    } // end inner class BandTile
+
+    /**
+     * Write thread id's band of the transpose of a matrix into bt.
+     * The band is bt.rows/nThreads rows of bt, and the last thread
+     * also takes the remainder.
+     * @param id: The thread id.
+     * @param nThreads: Nr of threads sharing the work.
+     * @param b2: The matrix as double[][], or null.
+     * @param b: The matrix as Matrix, if b2 is null.
+     * @param bt: The result, bt.rows = nr of columns of the matrix.
+     */
+    static void transposeBand(int id, int nThreads, double[][] b2, Matrix b,
+			      Matrix bt) {
+	int len = bt.rows/nThreads;
+	int startCol = id*len;
+	int stopCol = (id == nThreads - 1) ? bt.rows : startCol + len;
+	transposeBlock(b2, b, bt, 0, bt.cols, startCol, stopCol);
+    } // end transposeBand
+
+    /**
+     * Transpose the block of rows r0..r1 and columns c0..c1 of the
+     * matrix into bt.
+     */
+    static void transposeBlock(double[][] b2, Matrix b, Matrix bt,
+			       int r0, int r1, int c0, int c1) {
+	if (r1 - r0 > LEAF || c1 - c0 > LEAF) {
+	    if (r1 - r0 >= c1 - c0) {
+		int rm = (r0 + r1) >>> 1;
+		transposeBlock(b2, b, bt, r0, rm, c0, c1);
+		transposeBlock(b2, b, bt, rm, r1, c0, c1);
+	    } else {
+		int cm = (c0 + c1) >>> 1;
+		transposeBlock(b2, b, bt, r0, r1, c0, cm);
+		transposeBlock(b2, b, bt, r0, r1, cm, c1);
+	    }
+	    return;
+	}
+
+	double[] td = bt.data;
+	if (b2 != null) {
+	    for (int i = r0; i < r1; i++) {
+		double[] bRow = b2[i];
+		for (int j = c0; j < c1; j++) {
+		    td[bt.offset + j*bt.stride + i] = bRow[j];
+		}
+	    }
+	} else {
+	    double[] bd = b.data;
+	    for (int i = r0; i < r1; i++) {
+		int bRow = b.offset + i*b.stride;
+		for (int j = c0; j < c1; j++) {
+		    td[bt.offset + j*bt.stride + i] = bd[bRow + j];
+		}
+	    }
+	}
+    } // end transposeBlock
+} // end class Transposer
@@ -6,6 +6,7 @@ import java.util.concurrent.*;
 class ParallelRadix implements RadixAlgo {
     int numThreads;
     CyclicBarrier synchBar;
+    TreeCombiner tree;      // Used for step a if numThreads is large.
     int[] localMaxArray;    // Used for step a: find max.
     int[][] allCount;       // Used for step b and c.
 
@@ -31,6 +32,9 @@ class ParallelRadix implements RadixAlgo {
 	System.out.println("numThreads = " + numThreads);
 	synchBar = new CyclicBarrier(numThreads);
 	localMaxArray = new int[numThreads];
+	if (numThreads >= TreeCombiner.MIN_THREADS) {
+	    tree = new TreeCombiner(numThreads);
+	}
 	allCount = new int[numThreads + 1][];
     }
     
@@ -180,6 +184,11 @@ class ParallelRadix implements RadixAlgo {
 		    max = a[i];
 		}
 	    }
+	    if (tree != null) {
+		// Combine in log2(numThreads) levels instead of letting
+		// every thread scan 'localMaxArray'.
+		return (int) tree.allReduceMax(id, max);
+	    }
 	    localMaxArray[id] = max;
 	    synch();
 	    
@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Combines one value per thread into their max in log2(k) levels.
+ * At level l, thread id with bit l set publishes its value and leaves,
+ * and thread id with bits 0..l clear waits for thread id + 2^l and
+ * takes the max of the two. After the last level thread 0 holds the
+ * global max. Each thread has its own slot, PAD longs apart, so no
+ * two slots share a cache line, and a thread only waits for one slot
+ * per level instead of all threads scanning all slots.
+ * A slot is marked ready with the nr of the call (the epoch), so the
+ * slots never need to be reset. All threads must make the same calls
+ * in the same order.
+ * NB: reduceMax does not wait for the other threads to finish, so the
+ * caller must synchronize the threads (e.g. join or a barrier) before
+ * the next call. allReduceMax needs no such synchronization.
+ */
+class TreeCombiner {
+    static final int PAD = 8;          // Longs per slot: 64 bytes.
+    static final int MIN_THREADS = 8;  // Use the tree from this nr of threads.
+    static final int SPINS = 1000;     // Spins before yielding.
+    int nThreads;
+    AtomicLongArray slots;  // Value at id*PAD, epoch at id*PAD + 1.
+    long[] epochs;          // Nr of calls made by each thread, padded.
+    int resultInd;          // The broadcast slot of allReduceMax.
+
+    /**
+     * @param nThreads: Nr of threads taking part in each call.
+     */
+    TreeCombiner(int nThreads) {
+	this.nThreads = nThreads;
+	resultInd = nThreads*PAD;
+	slots = new AtomicLongArray((nThreads + 1)*PAD);
+	epochs = new long[nThreads*PAD];
+    }
+
+    /**
+     * Pack a value and its index into a long whose max gives the max
+     * value, and the lowest index of it on ties.
+     */
+    static long pack(int value, int index) {
+	return ((long) value << 32) | (~index & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Return the value of a packed long.
+     */
+    static int value(long key) {
+	return (int) (key >> 32);
+    }
+
+    /**
+     * Return the index of a packed long.
+     */
+    static int index(long key) {
+	return ~((int) key);
+    }
+
+    /**
+     * Combine the values of all threads.
+     * @param id: The calling thread's id, 0 <= id < nThreads.
+     * @param v: The calling thread's value.
+     * @return: The global max for thread 0. The other threads get the
+     * max of the values combined so far.
+     */
+    long reduceMax(int id, long v) {
+	long epoch = ++epochs[id*PAD];
+	for (int step = 1; step < nThreads; step <<= 1) {
+	    if ((id & step) != 0) {
+		// Publish and leave.
+		slots.set(id*PAD, v);
+		slots.set(id*PAD + 1, epoch);
+		return v;
+	    }
+	    int partner = id + step;
+	    if (partner < nThreads) {
+		waitFor(partner*PAD + 1, epoch);
+		long w = slots.get(partner*PAD);
+		if (w > v) {
+		    v = w;
+		}
+	    }
+	}
+	return v;
+    } // end reduceMax
+
+    /**
+     * Combine the values of all threads, and give the global max to
+     * every thread.
+     * @param id: The calling thread's id, 0 <= id < nThreads.
+     * @param v: The calling thread's value.
+     * @return: The global max.
+     */
+    long allReduceMax(int id, long v) {
+	v = reduceMax(id, v);
+	long epoch = epochs[id*PAD];
+	if (id == 0) {
+	    slots.set(resultInd, v);
+	    slots.set(resultInd + 1, epoch);
+	    return v;
+	}
+	waitFor(resultInd + 1, epoch);
+	return slots.get(resultInd);
+    } // end allReduceMax
+
+    /**
+     * Wait until a slot's epoch has reached a given epoch.
+     */
+    void waitFor(int ind, long epoch) {
+	int spins = 0;
+	while (slots.get(ind) < epoch) {
+	    if (++spins < SPINS) {
+		Thread.onSpinWait();
+	    } else {
+		Thread.yield();
+	    }
+	}
+    } // end waitFor
+} // end class TreeCombiner